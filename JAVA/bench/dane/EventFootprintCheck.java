@@ -0,0 +1,86 @@
+package dane;
+
+import java.time.LocalDateTime;
+
+/**
+ * this class checks how much heap memory one Event takes. It builds given number of events, half of them with alarm, measures growth of used heap
+ * by Runtime and fails with exit code 1 if an event takes more bytes than given limit. Event shares titles and places with other events, so
+ * the measured size consists of Event object, its times and Alarm. Run with optional arguments: number of events, 200000 by default,
+ * and limit of bytes per event, 400 by default. Source is kept in folder bench, outside of sources of the application, and is compiled
+ * with classes of the application on class path.
+ * @author Marta Bielecka
+ *
+ */
+class EventFootprintCheck {
+
+	/**
+	 * default number of built events
+	 */
+	private static final int DEFAULT_EVENTS = 200000;
+	/**
+	 * default limit of bytes per event
+	 */
+	private static final long DEFAULT_LIMIT = 400;
+	/**
+	 * titles shared by built events
+	 */
+	private static final String[] TITLES = { "Spotkanie", "Wyklad", "Laboratorium", "Konsultacje", "Egzamin" };
+	/**
+	 * places shared by built events
+	 */
+	private static final String[] PLACES = { "Sala 101", "Sala 204", "Aula", null };
+
+	/**
+	 * builds events of given number, times of every event different
+	 * @param count number of events
+	 * @return built events
+	 */
+	static Event[] build(int count) {
+		Event[] events = new Event[count];
+		LocalDateTime first = LocalDateTime.of(2020, 1, 1, 8, 0);
+		for (int i = 0; i < count; i++) {
+			LocalDateTime start = first.plusMinutes(15L * i);
+			events[i] = new Event(TITLES[i % TITLES.length], start, start.plusMinutes(90), null, PLACES[i % PLACES.length],
+					i % 2 == 0 ? start.minusMinutes(10) : null);
+		}
+		return events;
+	}
+
+	/**
+	 * returns used heap memory after collecting garbage
+	 * @return number of used bytes
+	 */
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * runs the check
+	 * @param args optional number of events and limit of bytes per event
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EVENTS;
+		long limit = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_LIMIT;
+		build(1000);
+		long before = usedMemory();
+		Event[] events = build(count);
+		long after = usedMemory();
+		double perEvent = (after - before) / (double) events.length;
+		System.out.printf("%d events, %.1f bytes per event, limit %d%n", events.length, perEvent, limit);
+		if (perEvent > limit) {
+			System.out.println("event takes more memory than allowed");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package system;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * this class measures speed of alarm schedulers. HeapAlarmScheduler and WheelAlarmScheduler are given the same workload - scheduling given number
+ * of alarms spread over the next 30 days, then cancelling and rescheduling every alarm while all of them are pending, then cancelling all of them.
+ * Scheduler thread is not started, so only keeping of pending alarms is measured. Run with optional arguments: number of alarms, 1000000
+ * by default, and number of rounds, of which the fastest is reported, 5 by default. Source is kept in folder bench, outside of sources
+ * of the application, and is compiled with classes of the application on class path.
+ * @author Mateusz Keller
+ *
+ */
+class AlarmSchedulerBenchmark {
+
+	/**
+	 * default number of pending alarms
+	 */
+	private static final int DEFAULT_ALARMS = 1000000;
+	/**
+	 * default number of rounds
+	 */
+	private static final int DEFAULT_ROUNDS = 5;
+	/**
+	 * period over which alarms are spread, in seconds
+	 */
+	private static final long PERIOD = 30L * 24 * 60 * 60;
+
+	/**
+	 * time in seconds at which schedulers are created
+	 */
+	private final long now = AlarmScheduler.nowMillis() / 1000;
+	/**
+	 * times of alarms, alarm of identifier i is first scheduled at times[i]
+	 */
+	private final long[] times;
+	/**
+	 * times at which alarms are rescheduled, alarm of identifier i is moved to later[i]
+	 */
+	private final long[] later;
+	/**
+	 * order in which alarms are cancelled and rescheduled
+	 */
+	private final int[] order;
+
+	/**
+	 * prepares workload of given number of alarms, the same for every scheduler
+	 * @param alarms number of alarms
+	 */
+	AlarmSchedulerBenchmark(int alarms) {
+		Random random = new Random(1);
+		times = new long[alarms];
+		later = new long[alarms];
+		order = new int[alarms];
+		for (int i = 0; i < alarms; i++) {
+			times[i] = now + 1 + (long) (random.nextDouble() * PERIOD);
+			later[i] = now + 1 + (long) (random.nextDouble() * PERIOD);
+			order[i] = i;
+		}
+		for (int i = alarms - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swapped = order[i];
+			order[i] = order[j];
+			order[j] = swapped;
+		}
+	}
+
+	/**
+	 * runs workload on given scheduler and prints time of every phase
+	 * @param name name of scheduler printed with results
+	 * @param scheduler empty scheduler
+	 * @return total time in nanoseconds
+	 */
+	long run(String name, AlarmScheduler scheduler) {
+		long start = System.nanoTime();
+		for (int i = 0; i < times.length; i++) {
+			scheduler.schedule(i, times[i]);
+		}
+		long scheduled = System.nanoTime();
+		for (int id : order) {
+			scheduler.cancel(id);
+			scheduler.schedule(id, later[id]);
+		}
+		long rescheduled = System.nanoTime();
+		if (scheduler.size() != times.length) {
+			throw new IllegalStateException(name + ": " + scheduler.size() + " alarms pending instead of " + times.length);
+		}
+		for (int id : order) {
+			scheduler.cancel(id);
+		}
+		long cancelled = System.nanoTime();
+		if (scheduler.size() != 0) {
+			throw new IllegalStateException(name + ": " + scheduler.size() + " alarms left after cancelling all");
+		}
+		System.out.printf("%-6s schedule %7.1f ns/alarm   cancel+schedule %7.1f ns/alarm   cancel %7.1f ns/alarm%n", name,
+				(scheduled - start) / (double) times.length, (rescheduled - scheduled) / (double) times.length,
+				(cancelled - rescheduled) / (double) times.length);
+		return cancelled - start;
+	}
+
+	/**
+	 * runs workload given number of rounds on new schedulers and prints the fastest round
+	 * @param name name of scheduler printed with results
+	 * @param schedulers creates empty scheduler for every round
+	 * @param rounds number of rounds
+	 */
+	void best(String name, Supplier<AlarmScheduler> schedulers, int rounds) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < rounds; i++) {
+			best = Math.min(best, run(name, schedulers.get()));
+		}
+		System.out.printf("%-6s fastest round %.0f ms%n%n", name, best / 1e6);
+	}
+
+	/**
+	 * runs the benchmark
+	 * @param args optional number of alarms and number of rounds
+	 */
+	public static void main(String[] args) {
+		int alarms = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ALARMS;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		AlarmSchedulerBenchmark benchmark = new AlarmSchedulerBenchmark(alarms);
+		AlarmScheduler.AlarmListener ignored = id -> {
+		};
+		System.out.println(alarms + " alarms, " + rounds + " rounds");
+		benchmark.best("heap", () -> new HeapAlarmScheduler(ignored), rounds);
+		benchmark.best("wheel", () -> new WheelAlarmScheduler(ignored, benchmark.now), rounds);
+	}
+}
@@ -1,11 +1,10 @@
 package dane;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.io.*;
-import sun.audio.*;
 
 /**
- * this class implements alarm sound, reading sound from a external file. Class is opening and handling stream to audio file.  
+ * this class implements alarm sound, reading sound from a external file. Sound is played by SoundPlayer on its own thread, so playing alarm does not block the caller.
+ * Audio file is decoded only once, when any alarm plays it for the first time, and decoded data is shared between alarms through SoundCache.
  * @author Mateusz Keller
  *
  */
@@ -17,13 +16,21 @@ public class Alarm { //implements java.io.Serializable
 	 */
 	private LocalDateTime before;
 	/**
-	 * name of an audio file containing sound to be displayed
+	 * name of an audio file containing sound to be displayed, null if sound given by program arguments should be used
 	 */
 	private String sound; //"alarm1.wav"
 	/**
-	 * stream handling audio data 
+	 * time of playing the sound in milliseconds
 	 */
-	private ContinuousAudioDataStream loop;
+	private static final long SOUND_LENGTH = 1500;
+	/**
+	 * format of time used when alarm is set less than an hour before event
+	 */
+	private static final DateTimeFormatter minutesFormat = DateTimeFormatter.ofPattern("m");
+	/**
+	 * format of time used when alarm is set at least an hour before event
+	 */
+	private static final DateTimeFormatter hoursFormat = DateTimeFormatter.ofPattern("H");
 
 	
 	/**
@@ -31,25 +38,17 @@ public class Alarm { //implements java.io.Serializable
 	 * @param before constructs alarm with given display date. File name for the sound field is given by Singleton instance, which passes it from program arguments.
 	 */
 	public Alarm(LocalDateTime before) {
-		this(before, AppParameters.getInstance().getSound());
+		this(before, null);
 	}
 	/**
-	 * constructs alarm object with given display date and audio file name
+	 * constructs alarm object with given display date and audio file name. Audio file is not opened until sound is played
 	 * @param before time, when alarm is displayed
 	 * @param sound name of the audio file to play
 	 */
 	public Alarm(LocalDateTime before, String sound)
 	{
 		this.before = before;
-		this.sound = AppParameters.getInstance().getSound();
-		try 
-		{
-			AudioStream audio = new AudioStream(new FileInputStream(sound));
-			AudioData audioD = audio.getData();
-			loop = new ContinuousAudioDataStream(audioD); 
-			
-		} catch (FileNotFoundException e) { e.printStackTrace();}
-		  catch (IOException e) { e.printStackTrace(); }
+		this.sound = sound;
 	}
 	 
 	/**
@@ -65,10 +64,10 @@ public class Alarm { //implements java.io.Serializable
 	public void setBefore(LocalDateTime before) { this.before = before; }
 	
 	/**
-	 * returns name of the audio file containing sound to be displayed
+	 * returns name of the audio file containing sound to be displayed, by default the one given by program arguments
 	 * @return String
 	 */
-	public String getSound() { return sound; }
+	public String getSound() { return sound != null ? sound : AppParameters.getInstance().getSound(); }
 	
 	/**
 	 * sets name of the audio file containing sound to be displayed
@@ -82,39 +81,30 @@ public class Alarm { //implements java.io.Serializable
 	 */
 	public String toString(){
 		String ret = "";
-		DateTimeFormatter timeFormat;
 		if(before.getHour() == 0)
 		{
-			timeFormat = DateTimeFormatter.ofPattern("m");
-			ret += before.format(timeFormat) + " minut przed"; 
+			ret += before.format(minutesFormat) + " minut przed"; 
 		}
 		else
 		{
-			timeFormat = DateTimeFormatter.ofPattern("H");
-			ret += before.format(timeFormat) + " godzin przed";
+			ret += before.format(hoursFormat) + " godzin przed";
 		}	
 		return ret;
 	}
 	
 	/**
-	 * opens stream with audio file and plays the sound in loop for 1500 ms
+	 * plays the sound in loop for 1500 ms. Method returns at once, sound is played and stopped by SoundPlayer
 	 */
 	public void playSound(){
-		AudioPlayer.player.start(loop);
-		try {
-			Thread.sleep(1500);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		AudioPlayer.player.stop(loop);		
+		SoundPlayer.getInstance().play(getSound(), SOUND_LENGTH);
 	}
 	
 	/**
-	 * closes stream with audio file
+	 * stops playing the sound
 	 */
 	public void stopSound()
 	{
-		AudioPlayer.player.stop(loop);
+		SoundPlayer.getInstance().stop(getSound());
 	}
 
 }
@@ -1,5 +1,8 @@
 package dane;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class is a Singleton implementation that delivers program arguments to inner data classes, e.g. Alarm class 
  * @author Marta Bielecka
@@ -15,6 +18,10 @@ public class AppParameters {
 	 * holds data passed from program arguments as string value (in program Calendar holds name of audio file in particular)
 	 */
 	private String sound;
+	/**
+	 * optional settings passed as program arguments in form name=value, after name of audio file
+	 */
+	private Map<String, String> options = new HashMap<>();
 	
 	/**
 	 * access method allowing inner classes of application get program parameters
@@ -22,13 +29,49 @@ public class AppParameters {
 	 */
 	public String getSound() {
 		return sound;
+	}
+	/**
+	 * returns value of optional setting passed as program argument name=value
+	 * @param name name of the setting
+	 * @param defaultValue value returned if setting was not passed or Singleton is not initialized
+	 * @return value of the setting
+	 */
+	public static String getOption(String name, String defaultValue) {
+		if (parameters == null) {
+			return defaultValue;
+		}
+		return parameters.options.getOrDefault(name, defaultValue);
+	}
+	/**
+	 * returns value of optional numeric setting passed as program argument name=value. Value which is not a number is reported and replaced by default value
+	 * @param name name of the setting
+	 * @param defaultValue value returned if setting was not passed, is not a number or Singleton is not initialized
+	 * @return value of the setting
+	 */
+	public static long getNumberOption(String name, long defaultValue) {
+		String value = getOption(name, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			System.err.println("program argument " + name + "=" + value + " is not a number, " + defaultValue + " is used");
+			return defaultValue;
+		}
 	}
 	 /**
-	  * initializes object with first parameter passed to the program, and adding this value to sound field
+	  * initializes object with first parameter passed to the program, and adding this value to sound field. Following parameters in form name=value are kept as optional settings
 	  * @param arg program parameters passed to Singleton
 	  */
 	public static void initialize(String [] arg) {
 		parameters = new AppParameters(arg[0]);
+		for (int i = 1; i < arg.length; i++) {
+			int separator = arg[i].indexOf('=');
+			if (separator > 0) {
+				parameters.options.put(arg[i].substring(0, separator), arg[i].substring(separator + 1));
+			}
+		}
 	}
 	/**
 	 * private constructor of the class , adding first parameter from the list to the sound field of AppParameter instance
@@ -21,9 +21,9 @@ public class Event implements java.io.Serializable {
 	 */
 	private LocalDateTime end;
 	/**
-	 * format of a date used to parse LocalDateTime objects to String in toString method
+	 * format of a date used to parse LocalDateTime objects to String in toString method, shared by all events
 	 */
-	private DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("EEEE dd MMMM HH:mm");
+	private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("EEEE dd MMMM HH:mm");
 	/**
 	 * short note about event, initialized by default with empty String
 	 */
@@ -33,13 +33,18 @@ public class Event implements java.io.Serializable {
 	 */
 	private String place = "";
 	/**
-	 * Alarm object connected with event if alarm is set, holds the date of alarm and sound to be displayed, handles sound playing, initialized by default with Alarm object holding null date 
+	 * Alarm object connected with event if alarm is set, holds the date of alarm and sound to be displayed, handles sound playing. Initialized by default with null,
+	 * Alarm object holding null date is created only when notification is requested
 	 */
-	private Alarm notification = new Alarm(null);
+	private Alarm notification = null;
 	/**
 	 * Contact object connected with event, if a person is bounded with it. Contains personal data of the person. Initialized by default with null
 	 */
 	private Contact person = null;
+	/**
+	 * identifier given to this event by Manager when event is added, 0 if event has not been added yet
+	 */
+	private int id;
 
 	/**
 	 * constructs event with given title, note, place, start and end time.
@@ -88,7 +93,7 @@ public class Event implements java.io.Serializable {
 		this.end = end;
 		this.note = note;
 		this.place = place;
-		this.notification = new Alarm(notification);
+		setNotification(notification);
 	}
 	
 	public Event() {
@@ -103,7 +108,7 @@ public class Event implements java.io.Serializable {
 		String ret = "\n\nWydarzenie " + tittle + "\n" +
 				start.format(dateFormat) + " - " + end.format(dateFormat);
 		
-		if(notification.getBefore() != null)	ret += "\n" + notification.toString();
+		if(hasNotification())	ret += "\n" + notification.toString();
 		if(place != "")	ret+= "\n" + place;
 		if(note != "")	ret+= "\n" + note;
 		
@@ -168,16 +173,26 @@ public class Event implements java.io.Serializable {
 	public void setPlace(String place) { this.place = place; }
 
 	/**
-	 * returns Alarm object from notification field of this event
+	 * returns Alarm object from notification field of this event. If alarm is not set, Alarm object holding null date is created
 	 * @return Alarm object connected with this event
 	 */
-	public Alarm getNotification() { return notification; }
+	public Alarm getNotification() {
+		if(notification == null) {
+			notification = new Alarm(null);
+		}
+		return notification;
+	}
+	/**
+	 * tells if alarm is set for this event, without creating Alarm object
+	 * @return true if this event has alarm with date set
+	 */
+	public boolean hasNotification() { return notification != null && notification.getBefore() != null; }
 //	public void setNotification(Alarm notification) { this.notification = notification; }
 	/**
 	 * changes Alarm object in notification field of this event to a new Alarm object with a given date
 	 * @param date new date and time, when alarm should be displayed
 	 */
-	public void setNotification(LocalDateTime date) {this.notification = new Alarm(date);}
+	public void setNotification(LocalDateTime date) {this.notification = date == null ? null : new Alarm(date);}
 
 	/**
 	 * returns Contact object from person field of this event
@@ -189,7 +204,18 @@ public class Event implements java.io.Serializable {
 	 * @param person new Contact object to be added to this event
 	 */
 	public void setPerson(Contact person) { this.person = person; }
-	
+
+	/**
+	 * returns identifier given to this event by Manager
+	 * @return identifier of this event, 0 if event has not been added yet
+	 */
+	public int getId() { return id; }
+	/**
+	 * changes identifier of this event, used by Manager when event is added
+	 * @param id new identifier of this event
+	 */
+	public void setId(int id) { this.id = id; }
+
 	/**
 	 * calls playSound method on Alarm object in notification field of this event
 	 */
@@ -0,0 +1,170 @@
+package dane;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * This class is a Singleton holding audio data of alarm sounds decoded to PCM, shared by all Alarm objects. Every audio file is decoded only once.
+ * Total size of held data is limited, when it is exceeded the least recently used sounds are removed.
+ * @author Mateusz Keller
+ *
+ */
+public class SoundCache {
+	/**
+	 * default limit of total size of decoded audio data in bytes
+	 */
+	private static final long DEFAULT_CAPACITY = 8 * 1024 * 1024;
+	/**
+	 * this field holds Singleton itself, it is initialized with null
+	 */
+	private static SoundCache cache = null;
+
+	/**
+	 * sound decoded to PCM samples
+	 */
+	public static class Sound {
+		/**
+		 * format of samples
+		 */
+		private final AudioFormat format;
+		/**
+		 * PCM samples
+		 */
+		private final byte[] data;
+
+		/**
+		 * constructs sound with given format and samples
+		 * @param format format of samples
+		 * @param data PCM samples
+		 */
+		Sound(AudioFormat format, byte[] data) {
+			this.format = format;
+			this.data = data;
+		}
+
+		/**
+		 * returns format of samples
+		 * @return format of samples
+		 */
+		public AudioFormat getFormat() { return format; }
+
+		/**
+		 * returns PCM samples, shared with other callers - must not be modified
+		 * @return PCM samples
+		 */
+		public byte[] getData() { return data; }
+	}
+
+	/**
+	 * limit of total size of decoded audio data in bytes
+	 */
+	private final long capacity;
+	/**
+	 * total size of decoded audio data held at the moment
+	 */
+	private long usedBytes = 0;
+	/**
+	 * decoded sounds keyed by absolute path of audio file, ordered from the least to the most recently used
+	 */
+	private final LinkedHashMap<String, Sound> sounds = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * private constructor of the class, setting limit of total size of decoded audio data
+	 * @param capacity limit in bytes
+	 */
+	private SoundCache(long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * static method that returns the only instance of SoundCache
+	 * @return the only instance of SoundCache
+	 */
+	public static synchronized SoundCache getInstance() {
+		if (cache == null) {
+			cache = new SoundCache(DEFAULT_CAPACITY);
+		}
+		return cache;
+	}
+
+	/**
+	 * returns key under which sound of given file is held
+	 * @param file name of audio file
+	 * @return absolute path of the file
+	 */
+	public static String key(String file) {
+		return new File(file).getAbsolutePath();
+	}
+
+	/**
+	 * returns sound of given file decoded to PCM, decoding it if it is not held yet
+	 * @param file name of audio file
+	 * @return decoded sound, shared with other callers
+	 * @throws IOException if file cannot be read or decoded
+	 */
+	public synchronized Sound getSound(String file) throws IOException {
+		String key = key(file);
+		Sound sound = sounds.get(key);
+		if (sound == null) {
+			sound = decode(key);
+			sounds.put(key, sound);
+			usedBytes += sound.data.length;
+			evict();
+		}
+		return sound;
+	}
+
+	/**
+	 * reads audio file and converts it to PCM samples
+	 * @param file name of audio file
+	 * @return decoded sound
+	 * @throws IOException if file cannot be read or decoded
+	 */
+	private static Sound decode(String file) throws IOException {
+		try (AudioInputStream source = AudioSystem.getAudioInputStream(new File(file))) {
+			AudioFormat format = source.getFormat();
+			AudioInputStream pcm = source;
+			if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED && format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+				format = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+				pcm = AudioSystem.getAudioInputStream(format, source);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = pcm.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return new Sound(format, out.toByteArray());
+		} catch (UnsupportedAudioFileException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * removes all sounds
+	 */
+	public synchronized void clear() {
+		sounds.clear();
+		usedBytes = 0;
+	}
+
+	/**
+	 * removes the least recently used sounds until total size fits in the limit. The most recently used sound is always kept
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Sound>> it = sounds.entrySet().iterator();
+		while (usedBytes > capacity && sounds.size() > 1 && it.hasNext()) {
+			usedBytes -= it.next().getValue().data.length;
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package dane;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+
+/**
+ * This class is a Singleton playing alarm sounds on its own thread. It holds a fixed pool of Clip lines, which stay opened with sound data
+ * taken from SoundCache, so playing the same sound again does not open any line. Methods of this class only pass requests to the sound thread and return at once,
+ * sounds are stopped by the sound thread after given time.
+ * @author Mateusz Keller
+ *
+ */
+public class SoundPlayer {
+	/**
+	 * number of Clip lines in the pool
+	 */
+	private static final int POOL_SIZE = 4;
+	/**
+	 * this field holds Singleton itself, it is initialized with null
+	 */
+	private static SoundPlayer player = null;
+
+	/**
+	 * thread on which all lines are opened, started and stopped
+	 */
+	private final ScheduledExecutorService soundThread = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "alarm-sound");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * pool of lines, null until line is needed for the first time
+	 */
+	private final Clip[] clips = new Clip[POOL_SIZE];
+	/**
+	 * key of sound loaded into each line, as returned by SoundCache.key
+	 */
+	private final String[] loaded = new String[POOL_SIZE];
+	/**
+	 * number of the current playing of each line, 0 if line is not playing. Scheduled stop is ignored if line was started again in the meantime
+	 */
+	private final long[] playing = new long[POOL_SIZE];
+	/**
+	 * number given to the next playing
+	 */
+	private long nextPlaying = 1;
+
+	/**
+	 * private constructor of the class
+	 */
+	private SoundPlayer() {}
+
+	/**
+	 * static method that returns the only instance of SoundPlayer
+	 * @return the only instance of SoundPlayer
+	 */
+	public static synchronized SoundPlayer getInstance() {
+		if (player == null) {
+			player = new SoundPlayer();
+		}
+		return player;
+	}
+
+	/**
+	 * opens line with given sound in background, so that first playing of the sound starts without delay
+	 * @param file name of audio file
+	 */
+	public void preload(String file) {
+		soundThread.execute(() -> {
+			try {
+				lineFor(SoundCache.key(file), file);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+	}
+
+	/**
+	 * plays given sound in loop for given time. Method returns at once, sound is played and stopped on the sound thread
+	 * @param file name of audio file
+	 * @param millis time of playing in milliseconds
+	 */
+	public void play(String file, long millis) {
+		soundThread.execute(() -> start(file, millis));
+	}
+
+	/**
+	 * stops all lines playing given sound. Method returns at once
+	 * @param file name of audio file
+	 */
+	public void stop(String file) {
+		soundThread.execute(() -> {
+			String key = SoundCache.key(file);
+			for (int i = 0; i < POOL_SIZE; i++) {
+				if (key.equals(loaded[i])) {
+					halt(i, playing[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * starts playing sound on a line and schedules its stop
+	 * @param file name of audio file
+	 * @param millis time of playing in milliseconds
+	 */
+	private void start(String file, long millis) {
+		try {
+			int line = lineFor(SoundCache.key(file), file);
+			long number = nextPlaying++;
+			playing[line] = number;
+			clips[line].setFramePosition(0);
+			clips[line].loop(Clip.LOOP_CONTINUOUSLY);
+			soundThread.schedule(() -> halt(line, number), millis, TimeUnit.MILLISECONDS);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * stops given line, if it is still playing the given playing
+	 * @param line number of line in the pool
+	 * @param number number of playing to stop
+	 */
+	private void halt(int line, long number) {
+		if (number != 0 && playing[line] == number) {
+			clips[line].stop();
+			playing[line] = 0;
+		}
+	}
+
+	/**
+	 * returns number of line to play given sound on. Idle line already holding the sound is preferred, otherwise unused line, idle line or
+	 * the line started the longest time ago is opened again with the sound
+	 * @param key key of the sound
+	 * @param file name of audio file
+	 * @return number of line in the pool
+	 * @throws Exception if sound cannot be decoded or line cannot be opened
+	 */
+	private int lineFor(String key, String file) throws Exception {
+		int chosen = -1;
+		for (int i = 0; i < POOL_SIZE; i++) {
+			if (key.equals(loaded[i]) && playing[i] == 0) {
+				return i;
+			}
+		}
+		for (int i = 0; i < POOL_SIZE && chosen < 0; i++) {
+			if (clips[i] == null) {
+				chosen = i;
+			}
+		}
+		for (int i = 0; i < POOL_SIZE && chosen < 0; i++) {
+			if (playing[i] == 0) {
+				chosen = i;
+			}
+		}
+		if (chosen < 0) {
+			chosen = 0;
+			for (int i = 1; i < POOL_SIZE; i++) {
+				if (playing[i] < playing[chosen]) {
+					chosen = i;
+				}
+			}
+		}
+		SoundCache.Sound sound = SoundCache.getInstance().getSound(file);
+		if (clips[chosen] == null) {
+			clips[chosen] = AudioSystem.getClip();
+		} else {
+			clips[chosen].stop();
+			clips[chosen].close();
+		}
+		loaded[chosen] = null;
+		playing[chosen] = 0;
+		clips[chosen].open(sound.getFormat(), sound.getData(), 0, sound.getData().length);
+		loaded[chosen] = key;
+		return chosen;
+	}
+}
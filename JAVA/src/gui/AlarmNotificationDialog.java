@@ -0,0 +1,80 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.Dialog.ModalityType;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.border.EmptyBorder;
+
+import dane.Event;
+
+/**
+ * this class is responsible for non-modal panel informing about approaching events. The same panel is reused for all alarms, alarms arriving while it is
+ * displayed are added to its list. Methods of this class must be called on event dispatch thread
+ * @author Marta Bielecka
+ *
+ */
+public class AlarmNotificationDialog extends JDialog {
+
+	/**
+	 * format of start time of events shown in the list
+	 */
+	private static final DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("dd.MM HH:mm");
+
+	/**
+	 * messages about approaching events shown in the panel
+	 */
+	private final DefaultListModel<String> messages = new DefaultListModel<>();
+
+	/**
+	 * creates panel with empty list of messages
+	 * @param owner frame over which panel is displayed
+	 */
+	public AlarmNotificationDialog(Frame owner) {
+		super(owner, "Approaching events");
+		setModalityType(ModalityType.MODELESS);
+		setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+		setBounds(100, 100, 360, 200);
+		getContentPane().setLayout(new BorderLayout());
+
+		JPanel contentPanel = new JPanel(new BorderLayout());
+		contentPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
+		contentPanel.add(new JScrollPane(new JList<>(messages)), BorderLayout.CENTER);
+		getContentPane().add(contentPanel, BorderLayout.CENTER);
+
+		JPanel buttonPane = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		JButton okButton = new JButton("OK");
+		okButton.addActionListener(e -> {
+			setVisible(false);
+			messages.clear();
+		});
+		buttonPane.add(okButton);
+		getContentPane().add(buttonPane, BorderLayout.SOUTH);
+		getRootPane().setDefaultButton(okButton);
+		setLocationRelativeTo(owner);
+	}
+
+	/**
+	 * adds messages about given events to the list and displays the panel, if it is hidden
+	 * @param events events whose alarms are due
+	 */
+	public void showAlarms(List<Event> events) {
+		if (!isVisible()) {
+			messages.clear();
+		}
+		for (Event e : events) {
+			messages.addElement("Event " + e.getTittle() + " will begin soon (" + e.getStart().format(timeFormat) + ")");
+		}
+		setVisible(true);
+		toFront();
+	}
+}
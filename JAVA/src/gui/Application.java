@@ -71,6 +71,10 @@ public class Application {
 	 * component responsible for closing application 
 	 */
 	private JMenuItem mntmClose;
+	/**
+	 * component responsible for calling method migrating database to the current version of events table
+	 */
+	private JMenuItem mntmUpgradeDatabase;
 	/**
 	 * component responsible for opening import option, holding components responsible for import (from XML and database)
 	 */
@@ -616,6 +620,7 @@ public class Application {
 			            JOptionPane.YES_NO_OPTION);
 			 
 			        if (result == JOptionPane.YES_OPTION) {
+			        	control.saveSnapshot();
 			        	System.exit(0);
 			        }	
 			}
@@ -653,7 +658,7 @@ public class Application {
 //			}
 //		}));
 		
-		mntmFromDatabase.addActionListener(new ActionListener(){
+		mntmFromDatabase.addActionListener(new SafeActionListener(new ActionListener(){
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
 				JFileChooser chooser = new JFileChooser();
@@ -663,9 +668,13 @@ public class Application {
 					File selectedFile = chooser.getSelectedFile();
 
 					if (selectedFile.exists()) {
-						control.importDataFromDatabase(selectedFile.getAbsolutePath());
-                        JOptionPane.showMessageDialog(null,
-								"Import succeeded.", "Success!", JOptionPane.INFORMATION_MESSAGE);
+						if (control.importDataFromDatabase(selectedFile.getAbsolutePath())) {
+							JOptionPane.showMessageDialog(null,
+									"Import succeeded.", "Success!", JOptionPane.INFORMATION_MESSAGE);
+						} else {
+							JOptionPane.showMessageDialog(null,
+									"Import cancelled, data was not changed.", "Cancelled", JOptionPane.INFORMATION_MESSAGE);
+						}
 					} else {
 						JOptionPane.showMessageDialog(null,
 								"Database " + selectedFile.getName() + " does not exist!", "Error",
@@ -673,7 +682,7 @@ public class Application {
 					}
 				}
 			}
-		});
+		}));
 		
 //		mntmToXML.addActionListener(new SafeActionListener(new ActionListener(){
 //			@Override
@@ -711,9 +720,13 @@ public class Application {
 								"Selected database " + selectedFile.getName() + " will be cleared, continue?",
 								"Overwrite?", JOptionPane.YES_NO_OPTION);
 						if (userChoice == JOptionPane.YES_OPTION) {
-							control.exportDataToDatabase(selectedFile.getAbsolutePath());
-							JOptionPane.showMessageDialog(null,
-									"Export succeeded.", "Success!", JOptionPane.INFORMATION_MESSAGE);
+							if (control.exportDataToDatabase(selectedFile.getAbsolutePath())) {
+								JOptionPane.showMessageDialog(null,
+										"Export succeeded.", "Success!", JOptionPane.INFORMATION_MESSAGE);
+							} else {
+								JOptionPane.showMessageDialog(null,
+										"Export cancelled.", "Cancelled", JOptionPane.INFORMATION_MESSAGE);
+							}
 						}
 					} else {
 						JOptionPane.showMessageDialog(null,
@@ -723,6 +736,37 @@ public class Application {
 			}
 		}));
 		
+		mntmUpgradeDatabase.addActionListener(new SafeActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				JFileChooser chooser = new JFileChooser();
+				int userChoice = chooser.showOpenDialog(null);
+
+				if (userChoice == JFileChooser.APPROVE_OPTION) {
+					File selectedFile = chooser.getSelectedFile();
+					if (selectedFile.exists()) {
+						userChoice = JOptionPane.showConfirmDialog(null,
+								"Events of database " + selectedFile.getName() + " will be copied to a new table, which only this version"
+										+ " of the program uses. Old table is left unchanged. Continue?",
+								"Upgrade?", JOptionPane.YES_NO_OPTION);
+						if (userChoice == JOptionPane.YES_OPTION) {
+							if (control.migrateDatabase(selectedFile.getAbsolutePath())) {
+								JOptionPane.showMessageDialog(null,
+										"Upgrade succeeded.", "Success!", JOptionPane.INFORMATION_MESSAGE);
+							} else {
+								JOptionPane.showMessageDialog(null,
+										"Upgrade cancelled, database was not changed.", "Cancelled", JOptionPane.INFORMATION_MESSAGE);
+							}
+						}
+					} else {
+						JOptionPane.showMessageDialog(null,
+								"Database " + selectedFile.getName() + " does not exist!", "Error",
+								JOptionPane.WARNING_MESSAGE);
+					}
+				}
+			}
+		}));
+		
 		mntmAboutProgram.addActionListener(new ActionListener(){
 
 			public void actionPerformed(ActionEvent arg0) {
@@ -753,6 +797,7 @@ public class Application {
 		            JOptionPane.YES_NO_OPTION);
 		 
 		        if (result == JOptionPane.YES_OPTION) {
+		            control.saveSnapshot();
 		            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		    } else { 
 		    	frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
@@ -773,6 +818,9 @@ public class Application {
 //		mnMain.add(mntmSettings);
 
 		
+		mntmUpgradeDatabase = new JMenuItem("Upgrade Database");
+		mnMenu.add(mntmUpgradeDatabase);
+		
 		mntmClose = new JMenuItem("Close");
 		KeyStroke closeKeyStroke = KeyStroke.getKeyStroke('X',InputEvent.CTRL_DOWN_MASK);
 		mntmClose.setAccelerator(closeKeyStroke);
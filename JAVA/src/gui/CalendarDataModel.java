@@ -1,8 +1,6 @@
 package gui;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,10 +20,6 @@ public class CalendarDataModel extends AbstractTableModel {
 	 * date to be displayed in calendar
 	 */
 	private LocalDate dateToDisplay = LocalDate.now(); 
-	/**
-	 * list of events to be shown in calendar
-	 */
-	private List<Event> eventsToDisplay = new ArrayList<Event>();
 	/**
 	 * maps list of events on corresponding days of month
 	 */
@@ -38,24 +32,13 @@ public class CalendarDataModel extends AbstractTableModel {
 			};
 
 	/**
-	 * sets list of events and displayed date with given values. Maps events from the list across days of the chosen month
+	 * sets displayed date and events mapped across days of the chosen month with given values
 	 * @param dateToDisplay date to be displayed - year and month
-	 * @param events - events to be displayed in a month
+	 * @param eventsAcrossDays - events to be displayed in a month, mapped on days of month by Manager
 	 */
-	public void setDataToDisplay(LocalDate dateToDisplay, List<Event> events) {
+	public void setDataToDisplay(LocalDate dateToDisplay, Map<Integer, List<Event>> eventsAcrossDays) {
 		this.dateToDisplay = dateToDisplay;
-		this.eventsToDisplay = events;
-		
-		eventsAcrossDays = new HashMap<>();
-        for (int day = 1; day <= dateToDisplay.lengthOfMonth(); ++day) {
-            LocalDateTime dayBegin = LocalDateTime.of(dateToDisplay.getYear(), dateToDisplay.getMonth(), day, 0,0,1);
-            LocalDateTime dayEnd = LocalDateTime.of(dateToDisplay.getYear(), dateToDisplay.getMonth(), day, 23,59,59);
-            for (Event event : events) {
-                if(event.getStart().isBefore(dayEnd) && event.getEnd().isAfter(dayBegin)) {
-                    eventsAcrossDays.computeIfAbsent(day, none -> new ArrayList<>()).add(event);
-                }
-            }
-        }
+		this.eventsAcrossDays = eventsAcrossDays;
 	}
 
 	private static final long serialVersionUID = -7100146141891377597L;
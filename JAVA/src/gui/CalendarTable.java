@@ -40,7 +40,7 @@ public class CalendarTable extends JTable implements InternalEventListener{
 	public void anEventOccurred(InternalEvent e) {
 		if (e instanceof DisplayedDateChanged) {
 			DisplayedDateChanged newEvent = (DisplayedDateChanged) e; 
-			model.setDataToDisplay(newEvent.getNewDate(), newEvent.getEvents());
+			model.setDataToDisplay(newEvent.getNewDate(), newEvent.getEventsAcrossDays());
 			this.resizeAndRepaint();
 		}		
 	}
@@ -0,0 +1,73 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.Dialog.ModalityType;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.border.EmptyBorder;
+
+/**
+ * this class is responsible for modal panel showing progress of import or export running in background. Number of transferred rows is shown
+ * on progress bar, cancel button asks the operation to stop. Panel blocks input to the main frame, but the frame is still repainted.
+ * Methods of this class must be called on event dispatch thread
+ * @author Marta Bielecka
+ *
+ */
+public class ProgressDialog extends JDialog {
+
+	/**
+	 * progress bar showing number of transferred rows
+	 */
+	private final JProgressBar progressBar = new JProgressBar();
+	/**
+	 * button asking operation to stop
+	 */
+	private final JButton cancelButton = new JButton("Cancel");
+
+	/**
+	 * creates panel for operation with given title
+	 * @param owner frame over which panel is displayed
+	 * @param title title of the panel, describing operation
+	 * @param onCancel action invoked when user cancels the operation
+	 */
+	public ProgressDialog(Frame owner, String title, Runnable onCancel) {
+		super(owner, title);
+		setModalityType(ModalityType.APPLICATION_MODAL);
+		setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+		setBounds(100, 100, 320, 110);
+		getContentPane().setLayout(new BorderLayout());
+
+		JPanel contentPanel = new JPanel(new BorderLayout());
+		contentPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
+		progressBar.setIndeterminate(true);
+		progressBar.setStringPainted(true);
+		progressBar.setString("starting...");
+		contentPanel.add(progressBar, BorderLayout.CENTER);
+		getContentPane().add(contentPanel, BorderLayout.CENTER);
+
+		JPanel buttonPane = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		cancelButton.addActionListener(e -> {
+			cancelButton.setEnabled(false);
+			progressBar.setString("cancelling...");
+			onCancel.run();
+		});
+		buttonPane.add(cancelButton);
+		getContentPane().add(buttonPane, BorderLayout.SOUTH);
+		setLocationRelativeTo(owner);
+	}
+
+	/**
+	 * shows number of rows transferred so far
+	 * @param rows number of transferred rows
+	 */
+	public void setRows(int rows) {
+		if (cancelButton.isEnabled()) {
+			progressBar.setString(rows + " rows");
+		}
+	}
+}
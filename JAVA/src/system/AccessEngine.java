@@ -0,0 +1,121 @@
+package system;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * engine keeping events and contacts in Access database, read and written by Transmiter through UCanAccess. Rows of events are read on the calling thread
+ * and converted to Event objects by a bounded pool of workers, when the pool is busy reading thread converts its chunk itself, so that read rows do not
+ * pile up in memory. Connection is taken from DatabaseSession and stays opened after the engine is closed, so that the next import or export
+ * of the same database does not load it again.
+ * @author Marta Bielecka
+ *
+ */
+class AccessEngine implements StorageEngine {
+
+	/**
+	 * number of workers converting rows to objects
+	 */
+	private static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Transmiter reading and writing rows of database
+	 */
+	private final Transmiter xPort;
+	/**
+	 * name of database file, null until opened
+	 */
+	private String baza;
+	/**
+	 * version of events table
+	 */
+	private EventSchema schema;
+
+	/**
+	 * constructs engine using given Transmiter
+	 * @param xPort Transmiter reading and writing rows of database
+	 */
+	AccessEngine(Transmiter xPort) {
+		this.xPort = xPort;
+	}
+
+	/**
+	 * opens database and finds version of its events table, migrating the file if needed. Migration reopens connection, so it is done before
+	 * contacts and events are read
+	 * @param file database file
+	 */
+	@Override
+	public void open(File file) {
+		baza = file.getPath();
+		schema = xPort.schema(baza);
+	}
+
+	@Override
+	public void streamEvents(Consumer<List<Event>> chunks) {
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(WORKERS * 2), r -> new Thread(r, "import-worker"), new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			List<CompletableFuture<Void>> converted = new ArrayList<>();
+			RuntimeException failure = null;
+			try {
+				xPort.bdReadRows(baza, schema.table, Transmiter.EVENT_SELECT + schema.table, rows ->
+						converted.add(CompletableFuture.runAsync(() -> {
+							List<Event> chunk = new ArrayList<>(rows.size());
+							for (Object[] row : rows) {
+								chunk.add(Transmiter.toEvent(row, schema));
+							}
+							synchronized (chunks) {
+								chunks.accept(chunk);
+							}
+						}, workers)));
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			try {
+				CompletableFuture.allOf(converted.toArray(new CompletableFuture<?>[0])).join();
+			} catch (CompletionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	@Override
+	public void streamContacts(Consumer<List<Contact>> chunks) {
+		xPort.bdImportKontakty(baza, chunks);
+	}
+
+	/**
+	 * writes changes of events and contacts to database in one transaction on connection of DatabaseSession, which is rolled back if any of them
+	 * cannot be written
+	 * @param changes changes to write
+	 * @return false if changed or deleted events were not found in the database exactly once, then nothing is written
+	 */
+	@Override
+	public boolean applyChanges(StorageChanges changes) {
+		return xPort.bdApplyChanges(changes, baza);
+	}
+
+	/**
+	 * does nothing, connection to database is closed by DatabaseSession when application exits
+	 */
+	@Override
+	public void close() {
+	}
+}
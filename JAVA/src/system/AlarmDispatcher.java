@@ -0,0 +1,97 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import dane.Event;
+import gui.AlarmNotificationDialog;
+
+/**
+ * this class passes due alarms from scheduler thread to user interface. Scheduler thread only puts events into a queue and returns at once,
+ * events are taken from the queue on event dispatch thread, and all alarms due within one window of time are shown together in a single non-modal panel.
+ * @author Mateusz Keller
+ *
+ */
+class AlarmDispatcher {
+
+	/**
+	 * time in milliseconds during which due alarms are gathered before they are shown
+	 */
+	private static final int WINDOW = 500;
+
+	/**
+	 * events whose alarms are due, waiting to be shown
+	 */
+	private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+	/**
+	 * true if showing of pending alarms has been requested and not performed yet
+	 */
+	private final AtomicBoolean requested = new AtomicBoolean(false);
+	/**
+	 * frame over which notification panel is displayed
+	 */
+	private final JFrame frame;
+	/**
+	 * timer closing window of gathered alarms, created on event dispatch thread
+	 */
+	private Timer timer;
+	/**
+	 * panel showing alarms, created on event dispatch thread when the first alarm is shown
+	 */
+	private AlarmNotificationDialog dialog;
+
+	/**
+	 * constructs dispatcher showing alarms over given frame
+	 * @param frame frame over which notification panel is displayed
+	 */
+	AlarmDispatcher(JFrame frame) {
+		this.frame = frame;
+	}
+
+	/**
+	 * puts event whose alarm is due into the queue, may be called on any thread. Method does not wait for the user
+	 * @param e event whose alarm is due
+	 */
+	public void publish(Event e) {
+		pending.add(e);
+		if (requested.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::openWindow);
+		}
+	}
+
+	/**
+	 * starts window of time in which alarms are gathered, called on event dispatch thread
+	 */
+	private void openWindow() {
+		if (timer == null) {
+			timer = new Timer(WINDOW, e -> showPending());
+			timer.setRepeats(false);
+		}
+		timer.restart();
+	}
+
+	/**
+	 * takes all events from the queue and shows them in notification panel, called on event dispatch thread
+	 */
+	private void showPending() {
+		requested.set(false);
+		List<Event> events = new ArrayList<>();
+		Event e;
+		while ((e = pending.poll()) != null) {
+			events.add(e);
+		}
+		if (events.isEmpty()) {
+			return;
+		}
+		if (dialog == null) {
+			dialog = new AlarmNotificationDialog(frame);
+		}
+		dialog.showAlarms(events);
+	}
+}
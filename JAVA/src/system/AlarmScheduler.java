@@ -0,0 +1,200 @@
+package system;
+
+import java.time.LocalDateTime;
+
+import dane.AppParameters;
+
+/**
+ * this class schedules alarms of events. Scheduler thread sleeps until the earliest alarm is due and informs listener about it.
+ * Subclasses decide how scheduled alarms are kept - HeapAlarmScheduler keeps them in a queue ordered by time, WheelAlarmScheduler
+ * in hierarchical timing wheels. Implementation is chosen by program argument alarms=heap or alarms=wheel.
+ * @author Mateusz Keller
+ *
+ */
+abstract class AlarmScheduler {
+
+	/**
+	 * interface of object informed about due alarms
+	 */
+	interface AlarmListener {
+		/**
+		 * called on scheduler thread when alarm of event is due
+		 * @param id identifier of event
+		 */
+		void alarmDue(int id);
+	}
+
+	/**
+	 * value returned by pollDue when no alarm is due
+	 */
+	static final int NONE = -1;
+	/**
+	 * longest time scheduler thread sleeps without checking the clock, in milliseconds. Allows to notice changes of system time
+	 */
+	private static final long MAX_SLEEP = 60 * 1000;
+
+	/**
+	 * object informed about due alarms
+	 */
+	private final AlarmListener listener;
+	/**
+	 * scheduler thread, null until scheduler is started
+	 */
+	private Thread thread;
+
+	/**
+	 * constructs scheduler informing given listener about due alarms
+	 * @param listener object informed about due alarms
+	 */
+	AlarmScheduler(AlarmListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * creates scheduler chosen by program argument alarms, heap implementation is used by default
+	 * @param listener object informed about due alarms
+	 * @return new scheduler
+	 */
+	static AlarmScheduler create(AlarmListener listener) {
+		String kind = AppParameters.getOption("alarms", "heap");
+		if (kind.equals("wheel")) {
+			return new WheelAlarmScheduler(listener, nowMillis() / 1000);
+		}
+		return new HeapAlarmScheduler(listener);
+	}
+
+	/**
+	 * starts scheduler thread, alarms scheduled earlier become active
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this::run, "alarm-scheduler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * stops scheduler thread
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	/**
+	 * schedules alarm of event, replacing its previous alarm
+	 * @param id identifier of event
+	 * @param time time of alarm in seconds, as kept in EventStore
+	 */
+	public synchronized void schedule(int id, long time) {
+		add(id, time);
+		notifyAll();
+	}
+
+	/**
+	 * cancels alarm of event
+	 * @param id identifier of event
+	 */
+	public synchronized void cancel(int id) {
+		remove(id);
+	}
+
+	/**
+	 * cancels all alarms
+	 */
+	public synchronized void clear() {
+		removeAll();
+	}
+
+	/**
+	 * returns number of scheduled alarms
+	 * @return number of alarms
+	 */
+	public synchronized int size() {
+		return count();
+	}
+
+	/**
+	 * adds alarm of event, replacing its previous alarm
+	 * @param id identifier of event
+	 * @param time time of alarm in seconds
+	 */
+	abstract void add(int id, long time);
+
+	/**
+	 * removes alarm of event, if it is scheduled
+	 * @param id identifier of event
+	 */
+	abstract void remove(int id);
+
+	/**
+	 * removes all alarms
+	 */
+	abstract void removeAll();
+
+	/**
+	 * returns number of scheduled alarms
+	 * @return number of alarms
+	 */
+	abstract int count();
+
+	/**
+	 * removes one alarm due at given time or earlier
+	 * @param now current time in seconds
+	 * @return identifier of event whose alarm is due, NONE if no alarm is due
+	 */
+	abstract int pollDue(long now);
+
+	/**
+	 * returns time of the earliest scheduled alarm
+	 * @return time in seconds, Long.MAX_VALUE if no alarm is scheduled
+	 */
+	abstract long nextTime();
+
+	/**
+	 * main loop of scheduler thread, waits for the earliest alarm and informs listener about it
+	 */
+	private void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			int due;
+			synchronized (this) {
+				long now = nowMillis();
+				due = pollDue(now / 1000);
+				if (due == NONE) {
+					long next = nextTime();
+					waitFor(next == Long.MAX_VALUE ? 0 : Math.max(1, Math.min(next * 1000 - now, MAX_SLEEP)));
+					continue;
+				}
+			}
+			try {
+				listener.alarmDue(due);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * waits until alarms change or given time passes
+	 * @param millis time to wait in milliseconds, 0 to wait until alarms change
+	 */
+	private void waitFor(long millis) {
+		try {
+			wait(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * returns current time in milliseconds, in the same time scale as times of alarms
+	 * @return current time in milliseconds
+	 */
+	static long nowMillis() {
+		LocalDateTime now = LocalDateTime.now();
+		return EventStore.toSeconds(now) * 1000 + now.getNano() / 1000000;
+	}
+}
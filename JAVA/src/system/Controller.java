@@ -44,6 +44,10 @@ public class Controller {
 	 * manager object to execute changes in applications logic classes
 	 */
 	private Manager manager = Controller.createManager();
+	/**
+	 * frame over which panels showing progress of import and export are displayed, given to playAlarms method
+	 */
+	private JFrame frame;
 	
 	/**
 	 * constructs Controller object with current date
@@ -54,9 +58,14 @@ public class Controller {
 	}
 
 	/**
-	 * initializes Controller object, refreshing event and contact data
+	 * initializes Controller object, loading events and contacts from snapshot and refreshing event and contact data
 	 */
 	public void initialize() {
+		manager.loadSnapshot();
+		String problem = manager.getLoadProblem();
+		if(problem != null) {
+			showMessage("Loading data", problem);
+		}
 		refreshEventData();
 		refreshContactData();
 		refreshDisplayedEvents(currentOption);
@@ -67,7 +76,7 @@ public class Controller {
 	 */
 	private void refreshEventData() {
 		notifyListeners(new DisplayedDateChanged(
-				displayedDate, manager.getEventsInMonth(displayedDate)));
+				displayedDate, manager.getEventsAcrossDays(displayedDate)));
 	}
 	
 	/**
@@ -77,7 +86,7 @@ public class Controller {
 	private void refreshDisplayedEvents(int option) {
 		LocalDate date = LocalDate.now();
 		if(option == 0) {
-			notifyListeners(new DisplayedEventsChanged(manager.getAllEvents()));
+			notifyListeners(new DisplayedEventsChanged(manager.getListedEvents()));
 			} else if(option == 1) {
 				notifyListeners(new DisplayedEventsChanged(manager.getEventsInDay(date)));
 			} else if(option == 2) {
@@ -134,40 +143,66 @@ public class Controller {
 	}
 
 	/**
-	 * invokes events import from XML file in manager, refreshes event data and displayed events
+	 * runs import or export in background, showing its progress, and waits until it ends while event dispatch thread keeps handling other events
+	 * @param title title of progress panel
+	 * @param work operation run in background
+	 * @param finish action invoked once on event dispatch thread when operation succeeds
+	 * @return true if operation succeeded, false if it was cancelled
+	 */
+	private boolean runJob(String title, Runnable work, Runnable finish) {
+		return new IoJob(frame, title, manager.getTransmiter(), work, finish).runAndWait();
+	}
+
+	/**
+	 * invokes events import from XML file in manager in background, then refreshes event data and displayed events
 	 * @param file XML file from which events are imported
+	 * @return true if import succeeded, false if it was cancelled
 	 */
-	public void importEventsFromXml(File file){
-        manager.importFromXML(file);
-        refreshEventData();
-        refreshDisplayedEvents(currentOption);
+	public boolean importEventsFromXml(File file){
+		return runJob("Importing from XML", () -> manager.importFromXML(file), () -> {
+			refreshEventData();
+			refreshDisplayedEvents(currentOption);
+		});
 	}
 	
 	/**
-	 * invokes function to import events from database in Manager object, refreshes events and contacts
+	 * invokes function to import events from database in Manager object in background, then refreshes events and contacts
 	 * @param db name of database file to import events from
+	 * @return true if import succeeded, false if it was cancelled
 	 */
-	public void importDataFromDatabase(String db){
-		manager.importFromDatabase(db);
-		refreshEventData();
-		refreshDisplayedEvents(currentOption);
-		refreshContactData();
+	public boolean importDataFromDatabase(String db){
+		return runJob("Importing from database", () -> manager.importFromDatabase(db), () -> {
+			refreshEventData();
+			refreshDisplayedEvents(currentOption);
+			refreshContactData();
+		});
 	}
 
 	/**
-	 * invokes method to export events to XML file in Manager class
+	 * invokes method to export events to XML file in Manager class in background
 	 * @param file XML file to export events to
+	 * @return true if export succeeded, false if it was cancelled
 	 */
-	public void exportEventsToXml(File file) {
-		manager.exportEventsToXml(file);
+	public boolean exportEventsToXml(File file) {
+		return runJob("Exporting to XML", () -> manager.exportEventsToXml(file), () -> {});
 	}
 
 	/**
-	 * invokes method to export events to database in Manager class
+	 * invokes method to export events to database in Manager class in background
 	 * @param db name of database file to export events to
+	 * @return true if export succeeded, false if it was cancelled
 	 */
-	public void exportDataToDatabase(String db){
-		manager.exportToDatabase(db);
+	public boolean exportDataToDatabase(String db){
+		return runJob("Exporting to database", () -> manager.exportToDatabase(db), () -> {});
+	}
+
+	/**
+	 * invokes migration of database file to the current version of events table in Manager class in background
+	 * @param db name of database file to migrate
+	 * @return true if migration succeeded, false if it was cancelled
+	 */
+	public boolean migrateDatabase(String db){
+		return runJob("Upgrading database", () -> manager.migrateDatabase(db), () -> {});
 	}
 
 	/**
@@ -184,8 +219,7 @@ public class Controller {
 	 */
 	public void changeDisplayedDate(int selectedMonth, int selectedYear) {
 		displayedDate = LocalDate.of(selectedYear, selectedMonth+1, 1);		
-		List<Event> events = manager.getEventsInMonth(selectedYear, selectedMonth + 1);
-		notifyListeners(new DisplayedDateChanged(displayedDate, events));		 		
+		notifyListeners(new DisplayedDateChanged(displayedDate, manager.getEventsAcrossDays(displayedDate)));		 		
 	}
 	
 	/**
@@ -270,10 +304,18 @@ public class Controller {
 	}
 	
 	/**
-	 * invokes method to play alarms in Manager class
-	 * @param frame component in which message dialogs about approaching events will be shown
+	 * saves events and contacts to snapshot, from which they are loaded at next start of the application
+	 */
+	public void saveSnapshot() {
+		manager.saveSnapshot();
+	}
+
+	/**
+	 * invokes method to play alarms in Manager class, remembers frame over which panels of import and export progress are shown
+	 * @param frame frame over which panel informing about approaching events will be shown
 	 */
 	public void playAlarms(JFrame frame) {
+		this.frame = frame;
 		manager.checkDueAlarms(frame);
 	}
 }
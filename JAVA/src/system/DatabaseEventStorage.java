@@ -0,0 +1,324 @@
+package system;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dane.Event;
+
+/**
+ * storage of events kept in Access database file instead of memory. Period queries are translated into SELECT statements with conditions on start
+ * and end columns, so that only events of displayed period are loaded, and every change of events is written to the file at once.
+ * All statements are prepared once and reused through DatabaseSession. Rows are identified by autonumber id column of the second version of events
+ * table, which is used as identifier of events, so nothing is remembered between queries. Files of the first version have no such column
+ * and cannot keep events until user migrates them. Every statement runs under lock of the file given by DatabaseSession, so that changes made
+ * by user never join transaction of export running on the same connection.
+ * @author Marta Bielecka
+ *
+ */
+class DatabaseEventStorage implements EventStorage {
+
+	/**
+	 * number of seconds in one day
+	 */
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+	/**
+	 * columns of events table read by load method, columns of Transmiter.EVENT_SELECT followed by id
+	 */
+	private static final String SELECT = "SELECT tittle, start, end, note, place, before, id FROM ";
+
+	/**
+	 * name of database file holding events
+	 */
+	private final String baza;
+	/**
+	 * version of events table in the database file
+	 */
+	private final EventSchema schema;
+	/**
+	 * lock of the database file, held while statements are run on its connection
+	 */
+	private final Object lock;
+	/**
+	 * statement finding events overlapping a period, same condition as used by EventStore
+	 */
+	private final String betweenSql;
+	/**
+	 * statement finding all events
+	 */
+	private final String allSql;
+	/**
+	 * statement finding event by id
+	 */
+	private final String getSql;
+	/**
+	 * statement finding identifiers of events ending before given time
+	 */
+	private final String endingBeforeSql;
+	/**
+	 * statement finding events with alarm
+	 */
+	private final String withAlarmSql;
+	/**
+	 * statement adding event
+	 */
+	private final String insertSql;
+	/**
+	 * statement changing event found by its id
+	 */
+	private final String updateSql;
+	/**
+	 * statement deleting event found by its id
+	 */
+	private final String deleteSql;
+
+	/**
+	 * constructs storage of events kept in given database file
+	 * @param baza name of a file with database
+	 * @param xPort Transmiter finding version of events table
+	 * @throws RuntimeException if events table of the file has no id column
+	 */
+	DatabaseEventStorage(String baza, Transmiter xPort) {
+		this.baza = baza;
+		this.schema = xPort.schema(baza);
+		if (!schema.keyed) {
+			throw new RuntimeException(baza + ": events table has no id column, upgrade the database to keep events in it");
+		}
+		this.lock = DatabaseSession.getInstance().lock(baza);
+		betweenSql = SELECT + schema.table + " WHERE start < ? AND (end > ? OR (end = start AND start >= ?)) ORDER BY start";
+		allSql = SELECT + schema.table + " ORDER BY start";
+		getSql = SELECT + schema.table + " WHERE id = ?";
+		endingBeforeSql = "SELECT id FROM " + schema.table + " WHERE end < ?";
+		withAlarmSql = SELECT + schema.table + " WHERE before IS NOT NULL";
+		insertSql = "INSERT INTO " + schema.table + " (tittle, start, end, note, place, sound, before) VALUES (?, ?, ?, ?, ?, ?, ?)";
+		updateSql = "UPDATE " + schema.table + " SET tittle = ?, start = ?, end = ?, note = ?, place = ?, sound = ?, before = ? WHERE id = ?";
+		deleteSql = "DELETE FROM " + schema.table + " WHERE id = ?";
+	}
+
+	@Override
+	public String getDatabase() {
+		return baza;
+	}
+
+	@Override
+	public int add(Event e) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, insertSql);
+				Transmiter.setEventColumns(ps, e, schema);
+				ps.executeUpdate();
+				try (ResultSet rs = DatabaseSession.getInstance().prepare(baza, "SELECT @@IDENTITY").executeQuery()) {
+					rs.next();
+					e.setId(rs.getInt(1));
+				}
+				return e.getId();
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public boolean replace(int id, Event e) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, updateSql);
+				Transmiter.setEventColumns(ps, e, schema);
+				ps.setInt(8, id);
+				if (ps.executeUpdate() == 0) {
+					return false;
+				}
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+			e.setId(id);
+			return true;
+		}
+	}
+
+	@Override
+	public boolean remove(int id) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, deleteSql);
+				ps.setInt(1, id);
+				return ps.executeUpdate() > 0;
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (lock) {
+			try {
+				DatabaseSession.getInstance().prepare(baza, "DELETE FROM " + schema.table).executeUpdate();
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public Event get(int id) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, getSql);
+				ps.setInt(1, id);
+				List<Event> events = load(ps);
+				return events.isEmpty() ? null : events.get(0);
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	/**
+	 * returns all events in the database. Whole table is read, so this method should be used only for export
+	 * @return list of all events ordered by start time
+	 */
+	@Override
+	public List<Event> all() {
+		synchronized (lock) {
+			try {
+				return load(DatabaseSession.getInstance().prepare(baza, allSql));
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	/**
+	 * returns the earliest events in the database, reading only given number of rows
+	 * @param limit maximal number of returned events
+	 * @return list of events ordered by start time
+	 */
+	@Override
+	public List<Event> first(int limit) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, allSql);
+				ps.setMaxRows(limit);
+				try {
+					return load(ps);
+				} finally {
+					ps.setMaxRows(0);
+				}
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public List<Event> between(long from, long to) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, betweenSql);
+				schema.setTime(ps, 1, EventStore.toDateTime(to));
+				schema.setTime(ps, 2, EventStore.toDateTime(from));
+				schema.setTime(ps, 3, EventStore.toDateTime(from));
+				return load(ps);
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public List<Event> inDay(long epochDay) {
+		return between(epochDay * SECONDS_PER_DAY, (epochDay + 1) * SECONDS_PER_DAY);
+	}
+
+	/**
+	 * returns events of consecutive days mapped on days they take place in. Events of all days are loaded with one query
+	 * @param firstDay number of the first day since 1970-01-01
+	 * @param days number of days
+	 * @return map of number of day to list of events ordered by start time, days without events are not present in the map
+	 */
+	@Override
+	public Map<Long, List<Event>> acrossDays(long firstDay, int days) {
+		Map<Long, List<Event>> events = new HashMap<>();
+		for (Event e : between(firstDay * SECONDS_PER_DAY, (firstDay + days) * SECONDS_PER_DAY)) {
+			long start = EventStore.toSeconds(e.getStart());
+			long end = EventStore.toSeconds(e.getEnd());
+			long lastDay = Math.floorDiv(end > start ? end - 1 : end, SECONDS_PER_DAY);
+			for (long day = Math.max(firstDay, Math.floorDiv(start, SECONDS_PER_DAY)); day <= Math.min(firstDay + days - 1, lastDay); day++) {
+				events.computeIfAbsent(day, d -> new ArrayList<>()).add(e);
+			}
+		}
+		return events;
+	}
+
+	@Override
+	public int[] endingBefore(long time) {
+		synchronized (lock) {
+			try {
+				PreparedStatement ps = DatabaseSession.getInstance().prepare(baza, endingBeforeSql);
+				schema.setTime(ps, 1, EventStore.toDateTime(time));
+				int[] found = new int[16];
+				int count = 0;
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						if (count == found.length) {
+							found = Arrays.copyOf(found, count * 2);
+						}
+						found[count++] = rs.getInt(1);
+					}
+				}
+				return Arrays.copyOf(found, count);
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public List<Event> withAlarm() {
+		synchronized (lock) {
+			try {
+				List<Event> events = load(DatabaseSession.getInstance().prepare(baza, withAlarmSql));
+				events.removeIf(e -> !e.hasNotification());
+				return events;
+			} catch (SQLException ee) {
+				throw new RuntimeException(ee);
+			}
+		}
+	}
+
+	@Override
+	public void clearAlarm(int id) {
+		synchronized (lock) {
+			Event e = get(id);
+			if (e == null || !e.hasNotification()) {
+				return;
+			}
+			e.setNotification(null);
+			replace(id, e);
+		}
+	}
+
+	/**
+	 * runs query beginning with columns of SELECT and gives identifiers to returned events, read from id column following the columns of event
+	 * @param ps prepared query with parameters set
+	 * @return list of returned events
+	 * @throws SQLException if query fails
+	 */
+	private List<Event> load(PreparedStatement ps) throws SQLException {
+		List<Event> events = new ArrayList<>();
+		try (ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				Event e = Transmiter.readEvent(rs, schema);
+				e.setId(rs.getInt(7));
+				events.add(e);
+			}
+		}
+		return events;
+	}
+}
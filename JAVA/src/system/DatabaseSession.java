@@ -0,0 +1,277 @@
+package system;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import dane.AppParameters;
+
+/**
+ * This class is a Singleton holding connections to Access database files. Opening UCanAccess connection loads whole file into memory, so connection
+ * to every file is opened only once and reused by all imports and exports. Statements run repeatedly are prepared once per connection and kept
+ * until the connection is closed. Connections are closed when application shuts down.
+ * With persistent mirror option the loaded copy of database is also kept on disk, in directory next to database file, and reused by later runs
+ * of application as long as database file has not been changed.
+ * @author Marta Bielecka
+ *
+ */
+public class DatabaseSession {
+	/**
+	 * this field holds Singleton itself, it is initialized with null
+	 */
+	private static DatabaseSession session = null;
+	/**
+	 * suffix of name of directory holding persistent mirror of database file
+	 */
+	private static final String MIRROR_SUFFIX = ".mirror";
+	/**
+	 * name of file describing database file the persistent mirror was built from
+	 */
+	private static final String FINGERPRINT_FILE = "fingerprint.properties";
+	/**
+	 * number of blocks of database file read to compute its hash
+	 */
+	private static final int HASH_BLOCKS = 16;
+	/**
+	 * size of block of database file read to compute its hash, in bytes
+	 */
+	private static final int HASH_BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * opened connections keyed by absolute path of database file
+	 */
+	private final Map<String, Connection> connections = new HashMap<>();
+	/**
+	 * prepared statements of opened connections keyed by absolute path of database file, then by text of statement
+	 */
+	private final Map<String, Map<String, PreparedStatement>> statements = new HashMap<>();
+	/**
+	 * locks of database files keyed by absolute path of database file, kept also after connection is closed
+	 */
+	private final Map<String, Object> locks = new HashMap<>();
+	/**
+	 * true if loaded copy of database is kept on disk and reused, taken from program argument mirror=disk
+	 */
+	private boolean persistentMirror = AppParameters.getOption("mirror", "memory").equals("disk");
+
+	/**
+	 * private constructor of the class
+	 */
+	private DatabaseSession() {}
+
+	/**
+	 * tells if loaded copy of database is kept on disk and reused
+	 * @return true if persistent mirror is used
+	 */
+	public synchronized boolean isPersistentMirror() {
+		return persistentMirror;
+	}
+
+	/**
+	 * chooses if loaded copy of database should be kept on disk and reused, applies to connections opened later
+	 * @param persistentMirror true to use persistent mirror
+	 */
+	public synchronized void setPersistentMirror(boolean persistentMirror) {
+		this.persistentMirror = persistentMirror;
+	}
+
+	/**
+	 * static method that returns the only instance of DatabaseSession
+	 * @return the only instance of DatabaseSession
+	 */
+	public static synchronized DatabaseSession getInstance() {
+		if (session == null) {
+			session = new DatabaseSession();
+		}
+		return session;
+	}
+
+	/**
+	 * returns connection to given database file, opening it if it is not opened yet or was closed. Returned connection must not be closed by caller
+	 * and is left in auto-commit mode
+	 * @param baza name of a file with database
+	 * @return connection to the database
+	 * @throws SQLException if connection cannot be opened
+	 */
+	public synchronized Connection getConnection(String baza) throws SQLException {
+		String key = new File(baza).getAbsolutePath();
+		Connection conn = connections.get(key);
+		if (conn == null || conn.isClosed()) {
+			if (persistentMirror) {
+				File mirror = prepareMirror(new File(key));
+				conn = DriverManager.getConnection("jdbc:ucanaccess://" + key + ";keepMirror=" + new File(mirror, "mirror").getPath());
+				writeFingerprint(new File(key));
+			} else {
+				conn = DriverManager.getConnection("jdbc:ucanaccess://" + key);
+			}
+			connections.put(key, conn);
+			statements.remove(key);
+		}
+		return conn;
+	}
+
+	/**
+	 * returns statement prepared on connection to given database file. Statement is prepared when it is requested for the first time
+	 * and reused later, so it must not be closed by caller. Caller must not use statement in parallel with other threads
+	 * @param baza name of a file with database
+	 * @param sql text of statement
+	 * @return prepared statement
+	 * @throws SQLException if connection cannot be opened or statement cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String baza, String sql) throws SQLException {
+		Connection conn = getConnection(baza);
+		Map<String, PreparedStatement> prepared = statements.computeIfAbsent(new File(baza).getAbsolutePath(), k -> new HashMap<>());
+		PreparedStatement ps = prepared.get(sql);
+		if (ps == null) {
+			ps = conn.prepareStatement(sql);
+			prepared.put(sql, ps);
+		}
+		return ps;
+	}
+
+	/**
+	 * returns lock of given database file. Connection runs one transaction at a time, so everyone running statements on the connection holds
+	 * monitor of this object meanwhile, and statements of one thread never join transaction of another one
+	 * @param baza name of a file with database
+	 * @return object to synchronize on
+	 */
+	public synchronized Object lock(String baza) {
+		return locks.computeIfAbsent(new File(baza).getAbsolutePath(), k -> new Object());
+	}
+
+	/**
+	 * closes connection to given database file, if it is opened
+	 * @param baza name of a file with database
+	 */
+	public synchronized void close(String baza) {
+		String key = new File(baza).getAbsolutePath();
+		if (connections.containsKey(key)) {
+			close(key, connections.remove(key));
+		}
+	}
+
+	/**
+	 * closes all opened connections, called when application shuts down
+	 */
+	public synchronized void closeAll() {
+		for (Map.Entry<String, Connection> entry : connections.entrySet()) {
+			close(entry.getKey(), entry.getValue());
+		}
+		connections.clear();
+	}
+
+	/**
+	 * closes given connection, writing pending changes to database file. Description of persistent mirror is updated, because database file
+	 * changed by exports still matches the mirror
+	 * @param key absolute path of database file
+	 * @param conn connection to close
+	 */
+	private void close(String key, Connection conn) {
+		try {
+			Map<String, PreparedStatement> prepared = statements.remove(key);
+			if (prepared != null) {
+				for (PreparedStatement ps : prepared.values()) {
+					ps.close();
+				}
+			}
+			conn.close();
+			if (persistentMirror && new File(key + MIRROR_SUFFIX).isDirectory()) {
+				writeFingerprint(new File(key));
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * returns directory of persistent mirror of given database file. If database file differs from the one the mirror was built from,
+	 * the mirror is removed, so that UCanAccess builds it again
+	 * @param database database file
+	 * @return directory of the mirror
+	 */
+	private File prepareMirror(File database) {
+		File dir = new File(database.getPath() + MIRROR_SUFFIX);
+		Properties expected = fingerprint(database);
+		Properties stored = new Properties();
+		File description = new File(dir, FINGERPRINT_FILE);
+		if (description.isFile()) {
+			try (InputStream in = new FileInputStream(description)) {
+				stored.load(in);
+			} catch (IOException e) {
+				stored.clear();
+			}
+		}
+		if (expected == null || !expected.equals(stored)) {
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File f : files) {
+					f.delete();
+				}
+			}
+		}
+		dir.mkdirs();
+		return dir;
+	}
+
+	/**
+	 * saves description of given database file in directory of its persistent mirror
+	 * @param database database file
+	 */
+	private void writeFingerprint(File database) {
+		Properties fingerprint = fingerprint(database);
+		File description = new File(database.getPath() + MIRROR_SUFFIX, FINGERPRINT_FILE);
+		if (fingerprint == null) {
+			description.delete();
+			return;
+		}
+		try (OutputStream out = new FileOutputStream(description)) {
+			fingerprint.store(out, null);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * describes content of database file by its size, time of last modification and hash of blocks spread evenly over the file.
+	 * Only a few blocks are read, so that checking large file stays fast
+	 * @param database database file
+	 * @return description of the file, null if file cannot be read
+	 */
+	private static Properties fingerprint(File database) {
+		try (RandomAccessFile file = new RandomAccessFile(database, "r")) {
+			long size = file.length();
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] block = new byte[HASH_BLOCK_SIZE];
+			long step = Math.max(HASH_BLOCK_SIZE, size / HASH_BLOCKS);
+			for (long position = 0; position < size; position += step) {
+				file.seek(position);
+				int read = file.read(block, 0, (int) Math.min(HASH_BLOCK_SIZE, size - position));
+				digest.update(block, 0, Math.max(read, 0));
+			}
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(String.format("%02x", b));
+			}
+			Properties fingerprint = new Properties();
+			fingerprint.setProperty("size", String.valueOf(size));
+			fingerprint.setProperty("modified", String.valueOf(database.lastModified()));
+			fingerprint.setProperty("hash", hash.toString());
+			return fingerprint;
+		} catch (IOException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+}
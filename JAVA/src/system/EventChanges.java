@@ -0,0 +1,144 @@
+package system;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import dane.Event;
+
+/**
+ * this class records changes of events and contacts made since data was last imported from or exported to a database file. Events are recognized by
+ * identifiers given by EventStore. For updated and deleted events content they had in the database is kept, so that their rows can be found there.
+ * Changes are recorded only while database file is known, otherwise the next export rewrites whole database. Methods may be called on any thread.
+ * @author Marta Bielecka
+ *
+ */
+class EventChanges {
+
+	/**
+	 * name of database file whose rows match events apart from recorded changes, null if there is no such file
+	 */
+	private String database;
+	/**
+	 * identifiers of events added since last synchronization
+	 */
+	private final Set<Integer> inserted = new HashSet<>();
+	/**
+	 * content in the database of events changed since last synchronization, keyed by identifier
+	 */
+	private final Map<Integer, Event> updated = new HashMap<>();
+	/**
+	 * content in the database of events deleted since last synchronization, keyed by identifier
+	 */
+	private final Map<Integer, Event> deleted = new HashMap<>();
+	/**
+	 * true if contact list was changed since last synchronization
+	 */
+	private boolean contactsChanged;
+
+	/**
+	 * forgets all changes, database file becomes the one matching events and contacts
+	 * @param database name of database file, null if events and contacts do not match any file
+	 */
+	public synchronized void reset(String database) {
+		this.database = database;
+		inserted.clear();
+		updated.clear();
+		deleted.clear();
+		contactsChanged = false;
+	}
+
+	/**
+	 * tells if changes are recorded against given database file
+	 * @param database name of database file
+	 * @return true if only recorded changes have to be written to this file
+	 */
+	public synchronized boolean isSyncedWith(String database) {
+		return this.database != null && this.database.equals(database);
+	}
+
+	/**
+	 * tells if event content in the database has to be recorded before the event is changed or deleted
+	 * @param id identifier of event
+	 * @return true if content of the event has not been recorded yet
+	 */
+	public synchronized boolean needsOriginal(int id) {
+		return database != null && !inserted.contains(id) && !updated.containsKey(id);
+	}
+
+	/**
+	 * records addition of event
+	 * @param id identifier of added event
+	 */
+	public synchronized void eventInserted(int id) {
+		if (database != null) {
+			inserted.add(id);
+		}
+	}
+
+	/**
+	 * records change of event
+	 * @param id identifier of changed event
+	 * @param original content of event before change, needed only if needsOriginal returned true
+	 */
+	public synchronized void eventUpdated(int id, Event original) {
+		if (needsOriginal(id) && original != null) {
+			updated.put(id, original);
+		}
+	}
+
+	/**
+	 * records deletion of event. Deleting event added since last synchronization cancels its addition
+	 * @param id identifier of deleted event
+	 * @param original content of event before deletion, needed only if needsOriginal returned true
+	 */
+	public synchronized void eventDeleted(int id, Event original) {
+		if (database == null || inserted.remove(id)) {
+			return;
+		}
+		Event inDatabase = updated.containsKey(id) ? updated.remove(id) : original;
+		if (inDatabase != null) {
+			deleted.put(id, inDatabase);
+		}
+	}
+
+	/**
+	 * records change of contact list
+	 */
+	public synchronized void contactsChanged() {
+		contactsChanged = true;
+	}
+
+	/**
+	 * tells if contact list was changed since last synchronization
+	 * @return true if contacts have to be exported
+	 */
+	public synchronized boolean areContactsChanged() {
+		return contactsChanged;
+	}
+
+	/**
+	 * returns identifiers of events added since last synchronization
+	 * @return copy of set of identifiers
+	 */
+	public synchronized Set<Integer> getInserted() {
+		return new HashSet<>(inserted);
+	}
+
+	/**
+	 * returns content in the database of events changed since last synchronization
+	 * @return copy of content keyed by identifier of event
+	 */
+	public synchronized Map<Integer, Event> getUpdated() {
+		return new HashMap<>(updated);
+	}
+
+	/**
+	 * returns content in the database of events deleted since last synchronization
+	 * @return copy of content keyed by identifier of event
+	 */
+	public synchronized Map<Integer, Event> getDeleted() {
+		return new HashMap<>(deleted);
+	}
+}
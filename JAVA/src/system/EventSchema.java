@@ -0,0 +1,123 @@
+package system;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * versions of schema of events table in Access database. First version keeps start, end and alarm time as formatted strings in Wydarzenia table,
+ * second one keeps them as date and time columns, with indexes on start and end, and identifies rows by autonumber id column, in WydarzeniaV2 table.
+ * Transmiter migrates database files from the first version to the second one when user asks for it.
+ * @author Marta Bielecka
+ *
+ */
+enum EventSchema {
+
+	/**
+	 * first version, times kept as strings
+	 */
+	STRINGS("Wydarzenia", " WHERE COALESCE(tittle, '') = ? AND COALESCE(start, '') = ? AND COALESCE(end, '') = ?" +
+			" AND COALESCE(note, '') = ? AND COALESCE(place, '') = ? AND COALESCE(before, '') = ?", false) {
+		@Override
+		LocalDateTime toTime(Object value) {
+			return parse((String) value);
+		}
+
+		@Override
+		void setTime(PreparedStatement ps, int index, LocalDateTime time) throws SQLException {
+			ps.setString(index, time == null ? "" : time.format(dateFormat));
+		}
+
+		@Override
+		void setTimeKey(PreparedStatement ps, int index, LocalDateTime time) throws SQLException {
+			setTime(ps, index, time);
+		}
+	},
+	/**
+	 * second version, times kept as date and time columns and rows identified by autonumber id column
+	 */
+	KEYED("WydarzeniaV2", " WHERE COALESCE(tittle, '') = ? AND start = ? AND end = ?" +
+			" AND COALESCE(note, '') = ? AND COALESCE(place, '') = ? AND COALESCE(before, TIMESTAMP '1970-01-01 00:00:00') = ?", true);
+
+	/**
+	 * pattern for dates formatting in the first version
+	 */
+	private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+	/**
+	 * value standing for missing time in conditions of the second version, must match TIMESTAMP literal in rowCondition
+	 */
+	private static final LocalDateTime NO_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+	/**
+	 * name of table holding events
+	 */
+	final String table;
+	/**
+	 * condition finding row of events table by content of event - title, start, end, note, place and alarm time. Sound column is not compared,
+	 * because it is not read back on import
+	 */
+	final String rowCondition;
+	/**
+	 * true if rows have autonumber id column, which identifies them independently of their content
+	 */
+	final boolean keyed;
+
+	/**
+	 * constructs version with given table and row condition
+	 * @param table name of table holding events
+	 * @param rowCondition condition finding row by content of event
+	 * @param keyed true if rows have id column
+	 */
+	EventSchema(String table, String rowCondition, boolean keyed) {
+		this.table = table;
+		this.rowCondition = rowCondition;
+		this.keyed = keyed;
+	}
+
+	/**
+	 * converts value read from time column, kept as date and time unless the version stores strings
+	 * @param value value of column, as returned by ResultSet.getObject
+	 * @return time, null if column is empty
+	 */
+	LocalDateTime toTime(Object value) {
+		return value == null ? null : ((Timestamp) value).toLocalDateTime();
+	}
+
+	/**
+	 * sets statement parameter to value of time column
+	 * @param ps statement to set parameter of
+	 * @param index index of parameter
+	 * @param time time to set, null for empty column
+	 * @throws SQLException if parameter cannot be set
+	 */
+	void setTime(PreparedStatement ps, int index, LocalDateTime time) throws SQLException {
+		if (time == null) {
+			ps.setNull(index, Types.TIMESTAMP);
+		} else {
+			ps.setTimestamp(index, Timestamp.valueOf(time));
+		}
+	}
+
+	/**
+	 * sets parameter of rowCondition to value of time column
+	 * @param ps statement to set parameter of
+	 * @param index index of parameter
+	 * @param time time to compare with, null for empty column
+	 * @throws SQLException if parameter cannot be set
+	 */
+	void setTimeKey(PreparedStatement ps, int index, LocalDateTime time) throws SQLException {
+		ps.setTimestamp(index, Timestamp.valueOf(time == null ? NO_TIME : time));
+	}
+
+	/**
+	 * converts time stored as string in the first version
+	 * @param value stored string
+	 * @return time, null if string is empty
+	 */
+	static LocalDateTime parse(String value) {
+		return value == null || value.isEmpty() ? null : LocalDateTime.parse(value);
+	}
+}
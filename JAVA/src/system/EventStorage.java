@@ -0,0 +1,191 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * storage of events used by Manager. Events are recognized by identifiers given by the storage, times are passed as numbers of seconds
+ * since 1970-01-01T00:00, as returned by EventStore.toSeconds. EventStore keeps all events in memory, DatabaseEventStorage keeps them
+ * in database file and loads only events returned from queries, MappedEventStore keeps them in memory mapped files outside Java heap,
+ * HsqldbStorage keeps them in native HSQLDB database and answers queries through its indexes.
+ * @author Mateusz Keller
+ * @author Marta Bielecka
+ *
+ */
+interface EventStorage {
+
+	/**
+	 * returns name of database file holding events, every change of events is written there at once
+	 * @return name of database file, null if events are kept in memory
+	 */
+	String getDatabase();
+
+	/**
+	 * adds event to the storage and gives it new identifier, which is also set in given Event object. Event must have start and end time
+	 * @param e event to add
+	 * @return identifier given to the event
+	 */
+	int add(Event e);
+
+	/**
+	 * adds event given by content of its columns and gives it new identifier. Used when events are read in bulk, storages keeping times
+	 * as seconds add them without creating Event object
+	 * @param start start time in seconds
+	 * @param end end time in seconds, not earlier than start
+	 * @param alarm alarm time in seconds, EventStore.NO_ALARM if alarm is not set
+	 * @param title title of event
+	 * @param note note of event
+	 * @param place place of event
+	 * @param person contact connected with event
+	 * @return identifier given to the event
+	 */
+	default int add(long start, long end, long alarm, String title, String note, String place, Contact person) {
+		Event e = new Event(title, EventStore.toDateTime(start), EventStore.toDateTime(end), note, place,
+				alarm == EventStore.NO_ALARM ? null : EventStore.toDateTime(alarm));
+		e.setPerson(person);
+		return add(e);
+	}
+
+	/**
+	 * replaces content of the event with given identifier by content of given event, keeping the identifier
+	 * @param id identifier of event to replace
+	 * @param e event holding new content, must have start and end time
+	 * @return true if event with given identifier was found
+	 */
+	boolean replace(int id, Event e);
+
+	/**
+	 * removes event with given identifier from the storage
+	 * @param id identifier of event to remove
+	 * @return true if event was found and removed
+	 */
+	boolean remove(int id);
+
+	/**
+	 * removes all events from the storage
+	 */
+	void clear();
+
+	/**
+	 * returns event with given identifier
+	 * @param id identifier of event
+	 * @return newly created Event object, or null if there is no such event
+	 */
+	Event get(int id);
+
+	/**
+	 * returns all events in the storage
+	 * @return list of all events ordered by start time
+	 */
+	List<Event> all();
+
+	/**
+	 * returns view of events as they are now, which is read after the lock guarding changes of events is released, while the storage is changed further
+	 * or after it is closed. Storages keeping events in memory return list of all events, MappedEventStore keeps content of records changed after
+	 * the view was taken, so that taking the view costs no time and no memory proportional to number of events
+	 * @return view of events, to be closed when it is no longer read
+	 */
+	default View view() {
+		List<Event> events = all();
+		return new View() {
+			@Override
+			public int size() {
+				return events.size();
+			}
+
+			@Override
+			public void stream(Consumer<List<Event>> chunks) {
+				chunks.accept(events);
+			}
+		};
+	}
+
+	/**
+	 * returns the earliest events in the storage, used for list of all events when not all of them fit in memory.
+	 * Storages keeping events outside memory read only given number of them
+	 * @param limit maximal number of returned events
+	 * @return list of events ordered by start time
+	 */
+	default List<Event> first(int limit) {
+		List<Event> events = all();
+		return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+	}
+
+	/**
+	 * returns events overlapping period [from, to). Event overlaps the period if it begins before the period ends and ends after the period begins,
+	 * events lasting no time at all are returned if they take place inside the period
+	 * @param from beginning of the period in seconds, inclusive
+	 * @param to end of the period in seconds, exclusive
+	 * @return list of events ordered by start time
+	 */
+	List<Event> between(long from, long to);
+
+	/**
+	 * returns events taking place in given day
+	 * @param epochDay number of day since 1970-01-01
+	 * @return list of events ordered by start time
+	 */
+	List<Event> inDay(long epochDay);
+
+	/**
+	 * returns events of consecutive days mapped on days they take place in. Event lasting several days is added to every of these days
+	 * @param firstDay number of the first day since 1970-01-01
+	 * @param days number of days
+	 * @return map of number of day to list of events ordered by start time, days without events are not present in the map
+	 */
+	Map<Long, List<Event>> acrossDays(long firstDay, int days);
+
+	/**
+	 * returns identifiers of events ending before given time
+	 * @param time time in seconds
+	 * @return identifiers of found events
+	 */
+	int[] endingBefore(long time);
+
+	/**
+	 * returns events whose alarm is set, used to schedule alarms
+	 * @return list of events with alarm
+	 */
+	List<Event> withAlarm();
+
+	/**
+	 * removes alarm from event with given identifier
+	 * @param id identifier of event
+	 */
+	void clearAlarm(int id);
+
+	/**
+	 * releases resources of the storage when Manager stops using it. Queries started before must still be answered
+	 */
+	default void close() {}
+
+	/**
+	 * events of storage as they were when the view was taken by EventStorage.view
+	 */
+	interface View extends AutoCloseable {
+
+		/**
+		 * returns number of events in the view
+		 * @return number of events
+		 */
+		int size();
+
+		/**
+		 * passes events of the view to consumer in chunks, without holding all of them at once. Events are in order kept by the storage,
+		 * not necessarily by start time, and no lock of the storage is held while consumer runs
+		 * @param chunks consumer receiving consecutive chunks of events
+		 */
+		void stream(Consumer<List<Event>> chunks);
+
+		/**
+		 * stops keeping content of the view, which cannot be read afterwards
+		 */
+		@Override
+		default void close() {}
+	}
+}
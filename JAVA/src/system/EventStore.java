@@ -0,0 +1,457 @@
+package system;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * columnar store of events used by Manager. Every event is kept as one row spread over separate arrays - start, end and alarm time as numbers of seconds,
+ * identifier, and title, note, place and contact in their own columns. Event objects are created only for rows returned from queries.
+ * Store keeps an interval tree and events mapped on days, both holding identifiers of events, to answer period queries without scanning all rows.
+ * @author Mateusz Keller
+ * @author Marta Bielecka
+ *
+ */
+class EventStore implements EventStorage {
+
+	/**
+	 * value of alarm column for events without alarm
+	 */
+	static final long NO_ALARM = Long.MIN_VALUE;
+	/**
+	 * number of seconds in one day
+	 */
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	/**
+	 * number of rows in the store
+	 */
+	private int size;
+	/**
+	 * identifier of event in each row
+	 */
+	private int[] ids = new int[16];
+	/**
+	 * start time of event in each row, as number of seconds since 1970-01-01T00:00
+	 */
+	private long[] starts = new long[16];
+	/**
+	 * end time of event in each row, as number of seconds since 1970-01-01T00:00
+	 */
+	private long[] ends = new long[16];
+	/**
+	 * alarm time of event in each row, as number of seconds since 1970-01-01T00:00, NO_ALARM if alarm is not set
+	 */
+	private long[] alarms = new long[16];
+	/**
+	 * title of event in each row
+	 */
+	private String[] titles = new String[16];
+	/**
+	 * note of event in each row
+	 */
+	private String[] notes = new String[16];
+	/**
+	 * place of event in each row
+	 */
+	private String[] places = new String[16];
+	/**
+	 * contact connected with event in each row
+	 */
+	private Contact[] persons = new Contact[16];
+	/**
+	 * row of the event with given identifier, -1 if event was removed
+	 */
+	private int[] rowOfId = new int[16];
+	/**
+	 * identifier to be given to the next added event
+	 */
+	private int nextId = 1;
+	/**
+	 * index of events ordered by start time, allowing to find events overlapping given period without scanning all rows
+	 */
+	private IntervalTree index = new IntervalTree();
+	/**
+	 * identifiers of events mapped on days they take place in, keyed by number of day since 1970-01-01 and ordered by start time.
+	 * Event lasting several days is held in every of these days
+	 */
+	private Map<Long, int[]> eventsByDay = new HashMap<>();
+
+	/**
+	 * converts date and time to number of seconds kept in the store
+	 * @param time date and time to convert
+	 * @return number of seconds since 1970-01-01T00:00
+	 */
+	static long toSeconds(LocalDateTime time) {
+		return time.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	/**
+	 * converts number of seconds kept in the store to date and time
+	 * @param seconds number of seconds since 1970-01-01T00:00
+	 * @return date and time
+	 */
+	static LocalDateTime toDateTime(long seconds) {
+		return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * returns number of events in the store
+	 * @return number of events
+	 */
+	public synchronized int size() { return size; }
+
+	/**
+	 * events in the store are kept only in memory
+	 * @return null
+	 */
+	@Override
+	public String getDatabase() { return null; }
+
+	/**
+	 * adds event to the store and gives it new identifier, which is also set in given Event object. Event must have start and end time.
+	 * @param e event to add
+	 * @return identifier given to the event
+	 */
+	public synchronized int add(Event e) {
+		int id = add(toSeconds(e.getStart()), toSeconds(e.getEnd()), e.hasNotification() ? toSeconds(e.getNotification().getBefore()) : NO_ALARM,
+				e.getTittle(), e.getNote(), e.getPlace(), e.getPerson());
+		e.setId(id);
+		return id;
+	}
+
+	/**
+	 * adds event given by content of its columns, without creating Event object, and gives it new identifier
+	 * @param start start time in seconds
+	 * @param end end time in seconds, not earlier than start
+	 * @param alarm alarm time in seconds, NO_ALARM if alarm is not set
+	 * @param title title of event
+	 * @param note note of event
+	 * @param place place of event
+	 * @param person contact connected with event
+	 * @return identifier given to the event
+	 */
+	@Override
+	public synchronized int add(long start, long end, long alarm, String title, String note, String place, Contact person) {
+		int id = nextId++;
+		if (id == rowOfId.length) {
+			rowOfId = Arrays.copyOf(rowOfId, id * 2);
+		}
+		if (size == ids.length) {
+			grow();
+		}
+		int row = size++;
+		rowOfId[id] = row;
+		ids[row] = id;
+		starts[row] = start;
+		ends[row] = end;
+		alarms[row] = alarm;
+		titles[row] = title;
+		notes[row] = note;
+		places[row] = place;
+		persons[row] = person;
+		indexRow(row);
+		return id;
+	}
+
+	/**
+	 * replaces content of the event with given identifier by content of given event, keeping the identifier
+	 * @param id identifier of event to replace
+	 * @param e event holding new content, must have start and end time
+	 * @return true if event with given identifier was found
+	 */
+	public synchronized boolean replace(int id, Event e) {
+		int row = row(id);
+		if (row < 0) {
+			return false;
+		}
+		unindexRow(row);
+		write(row, e);
+		e.setId(id);
+		indexRow(row);
+		return true;
+	}
+
+	/**
+	 * removes event with given identifier from the store. Last row is moved in place of the removed one
+	 * @param id identifier of event to remove
+	 * @return true if event was found and removed
+	 */
+	public synchronized boolean remove(int id) {
+		int row = row(id);
+		if (row < 0) {
+			return false;
+		}
+		unindexRow(row);
+		rowOfId[id] = -1;
+		int last = --size;
+		if (row != last) {
+			ids[row] = ids[last];
+			starts[row] = starts[last];
+			ends[row] = ends[last];
+			alarms[row] = alarms[last];
+			titles[row] = titles[last];
+			notes[row] = notes[last];
+			places[row] = places[last];
+			persons[row] = persons[last];
+			rowOfId[ids[row]] = row;
+		}
+		titles[last] = null;
+		notes[last] = null;
+		places[last] = null;
+		persons[last] = null;
+		return true;
+	}
+
+	/**
+	 * removes all events from the store
+	 */
+	public synchronized void clear() {
+		Arrays.fill(titles, 0, size, null);
+		Arrays.fill(notes, 0, size, null);
+		Arrays.fill(places, 0, size, null);
+		Arrays.fill(persons, 0, size, null);
+		Arrays.fill(rowOfId, -1);
+		size = 0;
+		index.clear();
+		eventsByDay.clear();
+	}
+
+	/**
+	 * returns event with given identifier
+	 * @param id identifier of event
+	 * @return newly created Event object, or null if there is no such event in the store
+	 */
+	public synchronized Event get(int id) {
+		int row = row(id);
+		return row < 0 ? null : materialize(row);
+	}
+
+	/**
+	 * returns all events in the store
+	 * @return list of all events ordered by start time
+	 */
+	public synchronized List<Event> all() {
+		return between(Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * returns events overlapping period [from, to), using interval tree
+	 * @param from beginning of the period in seconds, inclusive
+	 * @param to end of the period in seconds, exclusive
+	 * @return list of events ordered by start time
+	 */
+	public synchronized List<Event> between(long from, long to) {
+		List<Event> events = new ArrayList<>();
+		index.query(from, to, id -> events.add(materialize(rowOfId[id])));
+		return events;
+	}
+
+	/**
+	 * returns events taking place in given day, looking them up directly in events mapped on days
+	 * @param epochDay number of day since 1970-01-01
+	 * @return list of events ordered by start time
+	 */
+	public synchronized List<Event> inDay(long epochDay) {
+		int[] bucket = eventsByDay.get(epochDay);
+		if (bucket == null) {
+			return new ArrayList<>();
+		}
+		List<Event> events = new ArrayList<>(bucket.length);
+		for (int id : bucket) {
+			events.add(materialize(rowOfId[id]));
+		}
+		return events;
+	}
+
+	/**
+	 * returns events of consecutive days mapped on days they take place in, looking them up directly in events mapped on days
+	 * @param firstDay number of the first day since 1970-01-01
+	 * @param days number of days
+	 * @return map of number of day to list of events ordered by start time, days without events are not present in the map
+	 */
+	public synchronized Map<Long, List<Event>> acrossDays(long firstDay, int days) {
+		Map<Long, List<Event>> events = new HashMap<>();
+		for (long day = firstDay; day < firstDay + days; day++) {
+			List<Event> inDay = inDay(day);
+			if (!inDay.isEmpty()) {
+				events.put(day, inDay);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * returns identifiers of events ending before given time, scanning end column
+	 * @param time time in seconds
+	 * @return identifiers of found events
+	 */
+	public synchronized int[] endingBefore(long time) {
+		int[] found = new int[size];
+		int count = 0;
+		for (int row = 0; row < size; row++) {
+			if (ends[row] < time) {
+				found[count++] = ids[row];
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * returns events whose alarm is set, scanning alarm column
+	 * @return list of events with alarm
+	 */
+	public synchronized List<Event> withAlarm() {
+		List<Event> events = new ArrayList<>();
+		for (int row = 0; row < size; row++) {
+			if (alarms[row] != NO_ALARM) {
+				events.add(materialize(row));
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * removes alarm from event with given identifier
+	 * @param id identifier of event
+	 */
+	public synchronized void clearAlarm(int id) {
+		int row = row(id);
+		if (row >= 0) {
+			alarms[row] = NO_ALARM;
+		}
+	}
+
+	/**
+	 * returns row of event with given identifier
+	 * @param id identifier of event
+	 * @return row number, or -1 if there is no such event
+	 */
+	private int row(int id) {
+		return id > 0 && id < nextId ? rowOfId[id] : -1;
+	}
+
+	/**
+	 * creates Event object from given row
+	 * @param row row to create event from
+	 * @return newly created event
+	 */
+	private Event materialize(int row) {
+		Event e = new Event(titles[row], toDateTime(starts[row]), toDateTime(ends[row]), notes[row], places[row],
+				alarms[row] == NO_ALARM ? null : toDateTime(alarms[row]));
+		e.setPerson(persons[row]);
+		e.setId(ids[row]);
+		return e;
+	}
+
+	/**
+	 * writes content of given event into columns of given row
+	 * @param row row to write
+	 * @param e event to take content from
+	 */
+	private void write(int row, Event e) {
+		starts[row] = toSeconds(e.getStart());
+		ends[row] = toSeconds(e.getEnd());
+		alarms[row] = e.hasNotification() ? toSeconds(e.getNotification().getBefore()) : NO_ALARM;
+		titles[row] = e.getTittle();
+		notes[row] = e.getNote();
+		places[row] = e.getPlace();
+		persons[row] = e.getPerson();
+	}
+
+	/**
+	 * doubles capacity of all columns
+	 */
+	private void grow() {
+		int capacity = ids.length * 2;
+		ids = Arrays.copyOf(ids, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		alarms = Arrays.copyOf(alarms, capacity);
+		titles = Arrays.copyOf(titles, capacity);
+		notes = Arrays.copyOf(notes, capacity);
+		places = Arrays.copyOf(places, capacity);
+		persons = Arrays.copyOf(persons, capacity);
+	}
+
+	/**
+	 * returns number of the first day event in given row takes place in
+	 * @param row row of the event
+	 * @return number of day since 1970-01-01
+	 */
+	private long firstDay(int row) {
+		return Math.floorDiv(starts[row], SECONDS_PER_DAY);
+	}
+
+	/**
+	 * returns number of the last day event in given row takes place in. Event ending exactly at midnight does not take place in the day beginning at that midnight
+	 * @param row row of the event
+	 * @return number of day since 1970-01-01
+	 */
+	private long lastDay(int row) {
+		long end = ends[row] > starts[row] ? ends[row] - 1 : ends[row];
+		return Math.floorDiv(end, SECONDS_PER_DAY);
+	}
+
+	/**
+	 * adds event in given row to interval tree and to every day it takes place in
+	 * @param row row of the event
+	 */
+	private void indexRow(int row) {
+		int id = ids[row];
+		index.insert(starts[row], ends[row], id);
+		for (long day = firstDay(row); day <= lastDay(row); day++) {
+			int[] bucket = eventsByDay.get(day);
+			if (bucket == null) {
+				eventsByDay.put(day, new int[] { id });
+				continue;
+			}
+			int position = bucket.length;
+			while (position > 0 && starts[rowOfId[bucket[position - 1]]] > starts[row]) {
+				position--;
+			}
+			int[] grown = new int[bucket.length + 1];
+			System.arraycopy(bucket, 0, grown, 0, position);
+			grown[position] = id;
+			System.arraycopy(bucket, position, grown, position + 1, bucket.length - position);
+			eventsByDay.put(day, grown);
+		}
+	}
+
+	/**
+	 * removes event in given row from interval tree and from every day it takes place in
+	 * @param row row of the event
+	 */
+	private void unindexRow(int row) {
+		int id = ids[row];
+		index.remove(starts[row], id);
+		for (long day = firstDay(row); day <= lastDay(row); day++) {
+			int[] bucket = eventsByDay.get(day);
+			if (bucket == null) {
+				continue;
+			}
+			int position = 0;
+			while (position < bucket.length && bucket[position] != id) {
+				position++;
+			}
+			if (position == bucket.length) {
+				continue;
+			}
+			if (bucket.length == 1) {
+				eventsByDay.remove(day);
+			} else {
+				int[] shrunk = new int[bucket.length - 1];
+				System.arraycopy(bucket, 0, shrunk, 0, position);
+				System.arraycopy(bucket, position + 1, shrunk, position, bucket.length - position - 1);
+				eventsByDay.put(day, shrunk);
+			}
+		}
+	}
+}
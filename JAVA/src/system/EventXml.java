@@ -0,0 +1,317 @@
+package system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import dane.Alarm;
+import dane.Contact;
+import dane.Event;
+
+/**
+ * this class reads and writes events in XML files with StAX, one event at a time, so that size of file does not affect memory used.
+ * Events are written in compact format:
+ * <pre>
+ * &lt;events version="1"&gt;
+ *  &lt;event start="2019-06-16T14:00" end="2019-06-16T16:30" alarm="2019-06-16T13:45"&gt;
+ *   &lt;title&gt;...&lt;/title&gt;&lt;note&gt;...&lt;/note&gt;&lt;place&gt;...&lt;/place&gt;
+ *   &lt;person name="..." company="..." email="..." phone="..."/&gt;
+ *  &lt;/event&gt;
+ * &lt;/events&gt;
+ * </pre>
+ * Files written earlier by XMLEncoder, like wydarzenia file, are also read. Their objects are recognized by class names and built without reflection.
+ * @author Marta Bielecka
+ *
+ */
+class EventXml {
+
+	/**
+	 * version of compact format written to files
+	 */
+	private static final String VERSION = "1";
+
+	/**
+	 * private constructor, class has only static methods
+	 */
+	private EventXml() {}
+
+	/**
+	 * writes events to XML file in compact format
+	 * @param file file to write
+	 * @param events events to write
+	 * @param chunkSize number of events after which listener is informed
+	 * @param written listener receiving number of events written since its previous call
+	 * @throws IOException if file cannot be written
+	 */
+	static void write(File file, Iterable<Event> events, int chunkSize, IntConsumer written) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			XMLStreamWriter w = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			w.writeStartDocument("UTF-8", "1.0");
+			w.writeCharacters("\n");
+			w.writeStartElement("events");
+			w.writeAttribute("version", VERSION);
+			w.writeCharacters("\n");
+			int pending = 0;
+			for (Event e : events) {
+				writeEvent(w, e);
+				if (++pending == chunkSize) {
+					written.accept(pending);
+					pending = 0;
+				}
+			}
+			w.writeEndElement();
+			w.writeCharacters("\n");
+			w.writeEndDocument();
+			w.close();
+			if (pending > 0) {
+				written.accept(pending);
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * reads events from XML file in compact or XMLEncoder format and passes them to consumer in chunks, without holding all of them at once
+	 * @param file file to read
+	 * @param chunkSize number of events in one chunk
+	 * @param chunks consumer receiving consecutive chunks of events
+	 * @throws IOException if file cannot be read or has wrong format
+	 */
+	static void read(File file, int chunkSize, Consumer<List<Event>> chunks) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			XMLStreamReader r = factory.createXMLStreamReader(in);
+			List<Event> chunk = new ArrayList<>(chunkSize);
+			while (r.hasNext()) {
+				if (r.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				Event e = null;
+				if (r.getLocalName().equals("event")) {
+					e = readEvent(r);
+				} else if (r.getLocalName().equals("object") && Event.class.getName().equals(r.getAttributeValue(null, "class"))) {
+					e = (Event) readObject(r);
+				}
+				if (e != null) {
+					chunk.add(e);
+					if (chunk.size() == chunkSize) {
+						chunks.accept(chunk);
+						chunk = new ArrayList<>(chunkSize);
+					}
+				}
+			}
+			r.close();
+			if (!chunk.isEmpty()) {
+				chunks.accept(chunk);
+			}
+		} catch (XMLStreamException | RuntimeException e) {
+			throw new IOException(file + ": wrong format of events file", e);
+		}
+	}
+
+	/**
+	 * writes one event element
+	 * @param w writer positioned inside events element
+	 * @param e event to write
+	 * @throws XMLStreamException if element cannot be written
+	 */
+	private static void writeEvent(XMLStreamWriter w, Event e) throws XMLStreamException {
+		w.writeCharacters(" ");
+		w.writeStartElement("event");
+		w.writeAttribute("start", e.getStart().toString());
+		w.writeAttribute("end", e.getEnd().toString());
+		if (e.hasNotification()) {
+			w.writeAttribute("alarm", e.getNotification().getBefore().toString());
+		}
+		writeText(w, "title", e.getTittle());
+		writeText(w, "note", e.getNote());
+		writeText(w, "place", e.getPlace());
+		Contact person = e.getPerson();
+		if (person != null) {
+			w.writeEmptyElement("person");
+			writeAttribute(w, "name", person.getName());
+			writeAttribute(w, "company", person.getCompany());
+			writeAttribute(w, "email", person.getEmail());
+			writeAttribute(w, "phone", person.getPhone());
+		}
+		w.writeEndElement();
+		w.writeCharacters("\n");
+	}
+
+	/**
+	 * writes element holding text, if text is not empty
+	 * @param w writer
+	 * @param name name of element
+	 * @param text text to write, may be null
+	 * @throws XMLStreamException if element cannot be written
+	 */
+	private static void writeText(XMLStreamWriter w, String name, String text) throws XMLStreamException {
+		if (text != null && !text.isEmpty()) {
+			w.writeStartElement(name);
+			w.writeCharacters(text);
+			w.writeEndElement();
+		}
+	}
+
+	/**
+	 * writes attribute, if its value is not null
+	 * @param w writer positioned in start tag
+	 * @param name name of attribute
+	 * @param value value to write, may be null
+	 * @throws XMLStreamException if attribute cannot be written
+	 */
+	private static void writeAttribute(XMLStreamWriter w, String name, String value) throws XMLStreamException {
+		if (value != null) {
+			w.writeAttribute(name, value);
+		}
+	}
+
+	/**
+	 * reads event element of compact format
+	 * @param r reader positioned at start of event element, left at its end
+	 * @return read event
+	 * @throws XMLStreamException if element has wrong format
+	 */
+	private static Event readEvent(XMLStreamReader r) throws XMLStreamException {
+		Event e = new Event(null, time(r.getAttributeValue(null, "start")), time(r.getAttributeValue(null, "end")));
+		e.setNotification(time(r.getAttributeValue(null, "alarm")));
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (r.getLocalName()) {
+			case "title":
+				e.setTittle(r.getElementText());
+				break;
+			case "note":
+				e.setNote(r.getElementText());
+				break;
+			case "place":
+				e.setPlace(r.getElementText());
+				break;
+			case "person":
+				e.setPerson(new Contact(r.getAttributeValue(null, "name"), r.getAttributeValue(null, "company"),
+						r.getAttributeValue(null, "email"), r.getAttributeValue(null, "phone")));
+				skip(r);
+				break;
+			default:
+				skip(r);
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * reads value element of XMLEncoder format
+	 * @param r reader positioned at start of value element, left at its end
+	 * @return read value, null if element holds null or value of unknown type
+	 * @throws XMLStreamException if element has wrong format
+	 */
+	private static Object readValue(XMLStreamReader r) throws XMLStreamException {
+		switch (r.getLocalName()) {
+		case "string":
+			return r.getElementText();
+		case "object":
+			return readObject(r);
+		default:
+			skip(r);
+			return null;
+		}
+	}
+
+	/**
+	 * reads object element of XMLEncoder format. Objects of classes Event, Alarm, Contact and LocalDateTime are built from their properties
+	 * or arguments, other objects are skipped
+	 * @param r reader positioned at start of object element, left at its end
+	 * @return built object, null if class is unknown
+	 * @throws XMLStreamException if element has wrong format
+	 */
+	private static Object readObject(XMLStreamReader r) throws XMLStreamException {
+		String type = r.getAttributeValue(null, "class");
+		List<Object> arguments = new ArrayList<>();
+		Map<String, Object> properties = new HashMap<>();
+		while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			String property = r.getLocalName().equals("void") ? r.getAttributeValue(null, "property") : null;
+			if (property != null) {
+				Object value = null;
+				while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					value = readValue(r);
+				}
+				properties.put(property, value);
+			} else {
+				arguments.add(readValue(r));
+			}
+		}
+		if (type == null) {
+			return null;
+		}
+		switch (type) {
+		case "java.time.LocalDateTime":
+			return arguments.isEmpty() ? null : time((String) arguments.get(0));
+		case "dane.Alarm":
+			return new Alarm((LocalDateTime) properties.get("before"), (String) properties.get("sound"));
+		case "dane.Contact":
+			return new Contact((String) properties.get("name"), (String) properties.get("company"), (String) properties.get("email"),
+					(String) properties.get("phone"));
+		case "dane.Event":
+			Event e = new Event((String) properties.get("tittle"), (LocalDateTime) properties.get("start"), (LocalDateTime) properties.get("end"));
+			if (properties.containsKey("note")) {
+				e.setNote((String) properties.get("note"));
+			}
+			if (properties.containsKey("place")) {
+				e.setPlace((String) properties.get("place"));
+			}
+			Alarm alarm = (Alarm) properties.get("notification");
+			e.setNotification(alarm == null ? null : alarm.getBefore());
+			e.setPerson((Contact) properties.get("person"));
+			return e;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * skips current element with all its content
+	 * @param r reader positioned at start of element, left at its end
+	 * @throws XMLStreamException if element has wrong format
+	 */
+	private static void skip(XMLStreamReader r) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = r.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * converts text to date and time
+	 * @param text text in ISO format, may be null
+	 * @return date and time, null if text is null or empty
+	 */
+	private static LocalDateTime time(String text) {
+		return text == null || text.isEmpty() ? null : LocalDateTime.parse(text);
+	}
+}
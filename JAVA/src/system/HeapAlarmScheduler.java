@@ -0,0 +1,132 @@
+package system;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * scheduler keeping alarms in a queue ordered by time of alarm. Moved and cancelled alarms stay in the queue and are skipped when they reach its head,
+ * so adding, moving and cancelling alarm does not require scanning other alarms.
+ * @author Mateusz Keller
+ *
+ */
+class HeapAlarmScheduler extends AlarmScheduler {
+
+	/**
+	 * single alarm in the queue
+	 */
+	private static class Entry implements Comparable<Entry> {
+		/**
+		 * time of alarm in seconds, as kept in EventStore
+		 */
+		final long time;
+		/**
+		 * identifier of event
+		 */
+		final int id;
+
+		/**
+		 * constructs entry with given time and identifier
+		 * @param time time of alarm in seconds
+		 * @param id identifier of event
+		 */
+		Entry(long time, int id) {
+			this.time = time;
+			this.id = id;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			return Long.compare(time, other.time);
+		}
+	}
+
+	/**
+	 * alarms ordered by time, may hold entries of cancelled or moved alarms, which are skipped
+	 */
+	private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+	/**
+	 * current time of alarm of every scheduled event
+	 */
+	private final Map<Integer, Long> scheduled = new HashMap<>();
+
+	/**
+	 * constructs scheduler informing given listener about due alarms
+	 * @param listener object informed about due alarms
+	 */
+	HeapAlarmScheduler(AlarmListener listener) {
+		super(listener);
+	}
+
+	@Override
+	void add(int id, long time) {
+		scheduled.put(id, time);
+		queue.add(new Entry(time, id));
+		if (queue.size() > 2 * scheduled.size() + 16) {
+			compact();
+		}
+	}
+
+	@Override
+	void remove(int id) {
+		scheduled.remove(id);
+	}
+
+	@Override
+	void removeAll() {
+		scheduled.clear();
+		queue.clear();
+	}
+
+	@Override
+	int count() {
+		return scheduled.size();
+	}
+
+	@Override
+	int pollDue(long now) {
+		Entry first = head();
+		if (first == null || first.time > now) {
+			return NONE;
+		}
+		queue.poll();
+		scheduled.remove(first.id);
+		return first.id;
+	}
+
+	@Override
+	long nextTime() {
+		Entry first = head();
+		return first == null ? Long.MAX_VALUE : first.time;
+	}
+
+	/**
+	 * removes entries of cancelled and moved alarms from head of the queue
+	 * @return the earliest current entry, null if queue is empty
+	 */
+	private Entry head() {
+		Entry first = queue.peek();
+		while (first != null && !isCurrent(first)) {
+			queue.poll();
+			first = queue.peek();
+		}
+		return first;
+	}
+
+	/**
+	 * removes entries of cancelled and moved alarms from the queue
+	 */
+	private void compact() {
+		queue.removeIf(entry -> !isCurrent(entry));
+	}
+
+	/**
+	 * tells if entry holds current alarm of its event
+	 * @param entry entry to check
+	 * @return true if alarm was neither cancelled nor moved
+	 */
+	private boolean isCurrent(Entry entry) {
+		Long time = scheduled.get(entry.id);
+		return time != null && time == entry.time;
+	}
+}
@@ -0,0 +1,550 @@
+package system;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * storage of events and contacts kept in native HSQLDB database files, used as the main store of the application instead of Snapshot and Journal.
+ * Tables are CACHED, so rows stay on disk and only recently used ones are held in memory. Start, end and alarm time are kept as numbers of seconds
+ * used by EventStore, with B-tree indexes on start and end time, contacts have indexes on name and e-mail. Period queries are answered with
+ * index range on start time, beginning earlier by the length of the longest event, so that events started before the period are found too.
+ * Every change is written at once and logged by HSQLDB within WRITE_DELAY, so the database survives crash of the application. Access and XML files are used
+ * only to import and export data.
+ * @author Marta Bielecka
+ *
+ */
+class HsqldbStorage implements EventStorage {
+
+	/**
+	 * number of seconds in one day
+	 */
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+	/**
+	 * delay in milliseconds after which HSQLDB writes committed changes to its log on disk, at most this much of work is lost on crash, like in Journal
+	 */
+	private static final int WRITE_DELAY = 50;
+	/**
+	 * number of rows inserted with one batch when all data is replaced
+	 */
+	private static final int BATCH_SIZE = 1000;
+	/**
+	 * columns of events table read by queries, in order used by readEvent
+	 */
+	private static final String EVENT_SELECT = "SELECT id, title, start_time, end_time, alarm, note, place, has_person, person_name, person_company,"
+			+ " person_email, person_phone FROM events";
+	/**
+	 * statement adding event
+	 */
+	private static final String INSERT_EVENT = "INSERT INTO events (title, start_time, end_time, alarm, note, place, has_person, person_name,"
+			+ " person_company, person_email, person_phone, length) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	/**
+	 * statement adding contact
+	 */
+	private static final String INSERT_CONTACT = "INSERT INTO contacts (name, company, email, phone) VALUES (?, ?, ?, ?)";
+
+	/**
+	 * connection to the database
+	 */
+	private final Connection conn;
+	/**
+	 * statements prepared once and reused, keyed by their text
+	 */
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+	/**
+	 * length in seconds of the longest event in the database, period queries look back by this length. Read at opening, and again when
+	 * the longest event is removed or changed, through index on length, so that table is not scanned
+	 */
+	private long longest;
+
+	/**
+	 * opens database in given files, creating tables and indexes if they do not exist
+	 * @param path path of database files, without extension
+	 * @throws RuntimeException if database cannot be opened
+	 */
+	HsqldbStorage(File path) {
+		try {
+			conn = DriverManager.getConnection("jdbc:hsqldb:file:" + path.getPath() + ";hsqldb.write_delay_millis=" + WRITE_DELAY, "SA", "");
+			try (ResultSet rs = conn.getMetaData().getTables(null, "PUBLIC", "EVENTS", null)) {
+				if (!rs.next()) {
+					createTables();
+				}
+			}
+			readLongest();
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * creates tables and indexes of empty database
+	 * @throws SQLException if tables cannot be created
+	 */
+	private void createTables() throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			st.execute("CREATE CACHED TABLE events (id INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY, title LONGVARCHAR,"
+					+ " start_time BIGINT NOT NULL, end_time BIGINT NOT NULL, alarm BIGINT, note LONGVARCHAR, place LONGVARCHAR,"
+					+ " has_person BOOLEAN NOT NULL, person_name LONGVARCHAR, person_company LONGVARCHAR, person_email LONGVARCHAR,"
+					+ " person_phone LONGVARCHAR, length BIGINT NOT NULL)");
+			st.execute("CREATE INDEX events_start ON events (start_time)");
+			st.execute("CREATE INDEX events_end ON events (end_time)");
+			st.execute("CREATE INDEX events_length ON events (length)");
+			st.execute("CREATE CACHED TABLE contacts (id INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY, name LONGVARCHAR,"
+					+ " company LONGVARCHAR, email LONGVARCHAR, phone LONGVARCHAR)");
+			st.execute("CREATE INDEX contacts_name ON contacts (name)");
+			st.execute("CREATE INDEX contacts_email ON contacts (email)");
+		}
+	}
+
+	/**
+	 * events are not kept in Access database file
+	 * @return null
+	 */
+	@Override
+	public String getDatabase() { return null; }
+
+	@Override
+	public synchronized int add(Event e) {
+		try {
+			PreparedStatement ps = prepare(INSERT_EVENT);
+			setEvent(ps, e);
+			ps.executeUpdate();
+			try (ResultSet rs = ps.getGeneratedKeys()) {
+				rs.next();
+				e.setId(rs.getInt(1));
+			}
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+		noteLength(e);
+		return e.getId();
+	}
+
+	@Override
+	public synchronized boolean replace(int id, Event e) {
+		try {
+			long before = lengthOf(id);
+			PreparedStatement ps = prepare("UPDATE events SET title = ?, start_time = ?, end_time = ?, alarm = ?, note = ?, place = ?, has_person = ?,"
+					+ " person_name = ?, person_company = ?, person_email = ?, person_phone = ?, length = ? WHERE id = ?");
+			setEvent(ps, e);
+			ps.setInt(13, id);
+			if (ps.executeUpdate() == 0) {
+				return false;
+			}
+			if (before >= longest) {
+				readLongest();
+			}
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+		noteLength(e);
+		e.setId(id);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(int id) {
+		try {
+			long before = lengthOf(id);
+			PreparedStatement ps = prepare("DELETE FROM events WHERE id = ?");
+			ps.setInt(1, id);
+			if (ps.executeUpdate() == 0) {
+				return false;
+			}
+			if (before >= longest) {
+				readLongest();
+			}
+			return true;
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		try {
+			prepare("DELETE FROM events").executeUpdate();
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+		longest = 0;
+	}
+
+	@Override
+	public synchronized Event get(int id) {
+		try {
+			PreparedStatement ps = prepare(EVENT_SELECT + " WHERE id = ?");
+			ps.setInt(1, id);
+			List<Event> events = load(ps);
+			return events.isEmpty() ? null : events.get(0);
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * returns all events in the database. Whole table is read, so this method should be used only for export
+	 * @return list of all events ordered by start time
+	 */
+	@Override
+	public synchronized List<Event> all() {
+		try {
+			return load(prepare(EVENT_SELECT + " ORDER BY start_time"));
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	@Override
+	public synchronized List<Event> between(long from, long to) {
+		try {
+			PreparedStatement ps = prepare(EVENT_SELECT
+					+ " WHERE start_time >= ? AND start_time < ? AND (end_time > ? OR (end_time = start_time AND start_time >= ?)) ORDER BY start_time");
+			ps.setLong(1, from < Long.MIN_VALUE + longest ? Long.MIN_VALUE : from - longest);
+			ps.setLong(2, to);
+			ps.setLong(3, from);
+			ps.setLong(4, from);
+			return load(ps);
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	@Override
+	public synchronized List<Event> inDay(long epochDay) {
+		return between(epochDay * SECONDS_PER_DAY, (epochDay + 1) * SECONDS_PER_DAY);
+	}
+
+	/**
+	 * returns events of consecutive days mapped on days they take place in. Events of all days are loaded with one query
+	 * @param firstDay number of the first day since 1970-01-01
+	 * @param days number of days
+	 * @return map of number of day to list of events ordered by start time, days without events are not present in the map
+	 */
+	@Override
+	public synchronized Map<Long, List<Event>> acrossDays(long firstDay, int days) {
+		Map<Long, List<Event>> events = new HashMap<>();
+		for (Event e : between(firstDay * SECONDS_PER_DAY, (firstDay + days) * SECONDS_PER_DAY)) {
+			long start = EventStore.toSeconds(e.getStart());
+			long end = EventStore.toSeconds(e.getEnd());
+			long lastDay = Math.floorDiv(end > start ? end - 1 : end, SECONDS_PER_DAY);
+			for (long day = Math.max(firstDay, Math.floorDiv(start, SECONDS_PER_DAY)); day <= Math.min(firstDay + days - 1, lastDay); day++) {
+				events.computeIfAbsent(day, d -> new ArrayList<>()).add(e);
+			}
+		}
+		return events;
+	}
+
+	@Override
+	public synchronized int[] endingBefore(long time) {
+		try {
+			PreparedStatement ps = prepare("SELECT id FROM events WHERE end_time < ?");
+			ps.setLong(1, time);
+			int[] found = new int[16];
+			int count = 0;
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					if (count == found.length) {
+						found = Arrays.copyOf(found, count * 2);
+					}
+					found[count++] = rs.getInt(1);
+				}
+			}
+			return Arrays.copyOf(found, count);
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	@Override
+	public synchronized List<Event> withAlarm() {
+		try {
+			return load(prepare(EVENT_SELECT + " WHERE alarm IS NOT NULL"));
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	@Override
+	public synchronized void clearAlarm(int id) {
+		try {
+			PreparedStatement ps = prepare("UPDATE events SET alarm = NULL WHERE id = ?");
+			ps.setInt(1, id);
+			ps.executeUpdate();
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * returns all contacts in the database
+	 * @return list of contacts, in order they were added
+	 */
+	public synchronized ArrayList<Contact> contacts() {
+		ArrayList<Contact> contacts = new ArrayList<>();
+		try (ResultSet rs = prepare("SELECT name, company, email, phone FROM contacts ORDER BY id").executeQuery()) {
+			while (rs.next()) {
+				contacts.add(new Contact(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+			}
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+		return contacts;
+	}
+
+	/**
+	 * adds contact to the database
+	 * @param c contact to add
+	 */
+	public synchronized void addContact(Contact c) {
+		try {
+			PreparedStatement ps = prepare(INSERT_CONTACT);
+			setContact(ps, 1, c);
+			ps.executeUpdate();
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * removes the earliest added contact with the same content as given one. Contact is found through index on name, or on e-mail if it has no name
+	 * @param c contact to remove
+	 */
+	public synchronized void removeContact(Contact c) {
+		try {
+			PreparedStatement ps;
+			if (c.getName() != null) {
+				ps = prepare("SELECT id, name, company, email, phone FROM contacts WHERE name = ? ORDER BY id");
+				ps.setString(1, c.getName());
+			} else if (c.getEmail() != null) {
+				ps = prepare("SELECT id, name, company, email, phone FROM contacts WHERE email = ? ORDER BY id");
+				ps.setString(1, c.getEmail());
+			} else {
+				ps = prepare("SELECT id, name, company, email, phone FROM contacts WHERE name IS NULL AND email IS NULL ORDER BY id");
+			}
+			int id = -1;
+			try (ResultSet rs = ps.executeQuery()) {
+				while (id < 0 && rs.next()) {
+					if (same(rs.getString(2), c.getName()) && same(rs.getString(3), c.getCompany()) && same(rs.getString(4), c.getEmail())
+							&& same(rs.getString(5), c.getPhone())) {
+						id = rs.getInt(1);
+					}
+				}
+			}
+			if (id >= 0) {
+				PreparedStatement delete = prepare("DELETE FROM contacts WHERE id = ?");
+				delete.setInt(1, id);
+				delete.executeUpdate();
+			}
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * replaces all contacts and events in the database with given ones, in one transaction, so that failure leaves the database unchanged
+	 * @param contacts new contacts
+	 * @param events new events
+	 */
+	public synchronized void replaceAll(List<Contact> contacts, List<Event> events) {
+		try {
+			conn.setAutoCommit(false);
+			try {
+				prepare("DELETE FROM contacts").executeUpdate();
+				prepare("DELETE FROM events").executeUpdate();
+				PreparedStatement ps = prepare(INSERT_CONTACT);
+				int pending = 0;
+				for (Contact c : contacts) {
+					setContact(ps, 1, c);
+					ps.addBatch();
+					if (++pending == BATCH_SIZE) {
+						ps.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					ps.executeBatch();
+				}
+				ps = prepare(INSERT_EVENT);
+				pending = 0;
+				for (Event e : events) {
+					setEvent(ps, e);
+					ps.addBatch();
+					if (++pending == BATCH_SIZE) {
+						ps.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					ps.executeBatch();
+				}
+				conn.commit();
+			} catch (SQLException | RuntimeException ee) {
+				conn.rollback();
+				throw ee;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+		longest = 0;
+		for (Event e : events) {
+			noteLength(e);
+		}
+	}
+
+	/**
+	 * writes changes logged since last checkpoint into database files, so that the log is short and next opening is fast
+	 */
+	public synchronized void checkpoint() {
+		try {
+			prepare("CHECKPOINT").execute();
+		} catch (SQLException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * shuts the database down, writing all changes into database files
+	 */
+	@Override
+	public synchronized void close() {
+		try (Statement st = conn.createStatement()) {
+			st.execute("SHUTDOWN");
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * returns statement prepared earlier, or prepares it
+	 * @param sql text of statement
+	 * @return prepared statement
+	 * @throws SQLException if statement cannot be prepared
+	 */
+	private PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+		if (ps == null) {
+			ps = sql.equals(INSERT_EVENT) ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(sql);
+			statements.put(sql, ps);
+		}
+		return ps;
+	}
+
+	/**
+	 * runs query beginning with EVENT_SELECT
+	 * @param ps prepared query with parameters set
+	 * @return list of returned events
+	 * @throws SQLException if query fails
+	 */
+	private static List<Event> load(PreparedStatement ps) throws SQLException {
+		List<Event> events = new ArrayList<>();
+		try (ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				long alarm = rs.getLong(5);
+				boolean hasAlarm = !rs.wasNull();
+				Event e = new Event(rs.getString(2), EventStore.toDateTime(rs.getLong(3)), EventStore.toDateTime(rs.getLong(4)), rs.getString(6),
+						rs.getString(7), hasAlarm ? EventStore.toDateTime(alarm) : null);
+				if (rs.getBoolean(8)) {
+					e.setPerson(new Contact(rs.getString(9), rs.getString(10), rs.getString(11), rs.getString(12)));
+				}
+				e.setId(rs.getInt(1));
+				events.add(e);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * sets parameters of INSERT_EVENT, or the first 12 parameters of update, to content of event
+	 * @param ps statement to set parameters of
+	 * @param e event, must have start and end time
+	 * @throws SQLException if parameters cannot be set
+	 */
+	private static void setEvent(PreparedStatement ps, Event e) throws SQLException {
+		ps.setString(1, e.getTittle());
+		ps.setLong(2, EventStore.toSeconds(e.getStart()));
+		ps.setLong(3, EventStore.toSeconds(e.getEnd()));
+		if (e.hasNotification()) {
+			ps.setLong(4, EventStore.toSeconds(e.getNotification().getBefore()));
+		} else {
+			ps.setNull(4, Types.BIGINT);
+		}
+		ps.setString(5, e.getNote());
+		ps.setString(6, e.getPlace());
+		ps.setBoolean(7, e.getPerson() != null);
+		setContact(ps, 8, e.getPerson() == null ? new Contact(null, null, null, null) : e.getPerson());
+		ps.setLong(12, EventStore.toSeconds(e.getEnd()) - EventStore.toSeconds(e.getStart()));
+	}
+
+	/**
+	 * sets four consecutive parameters to name, company, e-mail and phone of contact
+	 * @param ps statement to set parameters of
+	 * @param first index of parameter holding name
+	 * @param c contact
+	 * @throws SQLException if parameters cannot be set
+	 */
+	private static void setContact(PreparedStatement ps, int first, Contact c) throws SQLException {
+		ps.setString(first, c.getName());
+		ps.setString(first + 1, c.getCompany());
+		ps.setString(first + 2, c.getEmail());
+		ps.setString(first + 3, c.getPhone());
+	}
+
+	/**
+	 * reads length of the longest event in the database through index on length
+	 * @throws SQLException if query fails
+	 */
+	private void readLongest() throws SQLException {
+		try (ResultSet rs = prepare("SELECT MAX(length) FROM events").executeQuery()) {
+			rs.next();
+			longest = rs.getLong(1);
+		}
+	}
+
+	/**
+	 * reads length of event with given identifier through primary key
+	 * @param id identifier of event
+	 * @return length in seconds, -1 if there is no such event
+	 * @throws SQLException if query fails
+	 */
+	private long lengthOf(int id) throws SQLException {
+		PreparedStatement ps = prepare("SELECT length FROM events WHERE id = ?");
+		ps.setInt(1, id);
+		try (ResultSet rs = ps.executeQuery()) {
+			return rs.next() ? rs.getLong(1) : -1;
+		}
+	}
+
+	/**
+	 * remembers length of event if it is the longest one
+	 * @param e added or changed event
+	 */
+	private void noteLength(Event e) {
+		longest = Math.max(longest, EventStore.toSeconds(e.getEnd()) - EventStore.toSeconds(e.getStart()));
+	}
+
+	/**
+	 * compares texts, null is equal only to null
+	 * @param a first text
+	 * @param b second text
+	 * @return true if texts are equal
+	 */
+	private static boolean same(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,271 @@
+package system;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * balanced (AVL) binary search tree of intervals, ordered by interval start. Every node remembers the latest end of all intervals in its subtree,
+ * which allows to find all intervals overlapping given window in O(log n + k) time, where k is number of returned intervals.
+ * Intervals starting at the same moment are kept together in one node. Every interval carries identifier of the event it belongs to.
+ * @author Marta Bielecka
+ *
+ */
+class IntervalTree {
+
+	/**
+	 * single node of the tree, holding all intervals with the same start
+	 */
+	private static class Node {
+		/**
+		 * start shared by all intervals in this node
+		 */
+		long start;
+		/**
+		 * latest end of intervals in this node and in both subtrees
+		 */
+		long maxEnd;
+		/**
+		 * height of subtree rooted in this node
+		 */
+		int height = 1;
+		/**
+		 * left subtree, holding intervals starting earlier
+		 */
+		Node left;
+		/**
+		 * right subtree, holding intervals starting later
+		 */
+		Node right;
+		/**
+		 * identifiers attached to intervals in this node
+		 */
+		int[] items = new int[2];
+		/**
+		 * ends of intervals in this node, in the same order as items
+		 */
+		long[] ends = new long[2];
+		/**
+		 * number of intervals in this node
+		 */
+		int count;
+
+		/**
+		 * constructs empty node with given start
+		 * @param start start of intervals to be held in this node
+		 */
+		Node(long start) {
+			this.start = start;
+		}
+	}
+
+	/**
+	 * root of the tree
+	 */
+	private Node root;
+	/**
+	 * number of intervals in the tree
+	 */
+	private int size;
+	/**
+	 * set by remove methods when an interval was found and removed
+	 */
+	private boolean removed;
+
+	/**
+	 * returns number of intervals in the tree
+	 * @return number of intervals
+	 */
+	public int size() { return size; }
+
+	/**
+	 * removes all intervals from the tree
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * adds interval with attached object to the tree
+	 * @param start start of the interval
+	 * @param end end of the interval, not earlier than start
+	 * @param item identifier attached to the interval
+	 */
+	public void insert(long start, long end, int item) {
+		root = insert(root, start, end, item);
+		size++;
+	}
+
+	/**
+	 * removes interval with given start and attached identifier from the tree
+	 * @param start start of the interval, the same as given while inserting
+	 * @param item identifier attached to the interval
+	 * @return true if interval was found and removed
+	 */
+	public boolean remove(long start, int item) {
+		removed = false;
+		root = remove(root, start, item);
+		if (removed) {
+			size--;
+		}
+		return removed;
+	}
+
+	/**
+	 * passes to given action identifiers of all intervals overlapping window [from, to). Interval overlaps window if it starts before its end and
+	 * ends after its beginning. Intervals of zero length are treated as overlapping if they lie inside the window. Identifiers are passed in order of interval start.
+	 * @param from beginning of the window, inclusive
+	 * @param to end of the window, exclusive
+	 * @param result action receiving found identifiers
+	 */
+	public void query(long from, long to, IntConsumer result) {
+		query(root, from, to, result);
+	}
+
+	private void query(Node node, long from, long to, IntConsumer result) {
+		if (node == null || node.maxEnd < from) {
+			return;
+		}
+		query(node.left, from, to, result);
+		if (node.start >= to) {
+			return;
+		}
+		for (int i = 0; i < node.count; i++) {
+			if (node.ends[i] > from || node.start >= from) {
+				result.accept(node.items[i]);
+			}
+		}
+		query(node.right, from, to, result);
+	}
+
+	private Node insert(Node node, long start, long end, int item) {
+		if (node == null) {
+			node = new Node(start);
+			add(node, end, item);
+			update(node);
+			return node;
+		}
+		if (start < node.start) {
+			node.left = insert(node.left, start, end, item);
+		} else if (start > node.start) {
+			node.right = insert(node.right, start, end, item);
+		} else {
+			add(node, end, item);
+		}
+		return balance(node);
+	}
+
+	private Node remove(Node node, long start, int item) {
+		if (node == null) {
+			return null;
+		}
+		if (start < node.start) {
+			node.left = remove(node.left, start, item);
+		} else if (start > node.start) {
+			node.right = remove(node.right, start, item);
+		} else {
+			int i = 0;
+			while (i < node.count && node.items[i] != item) {
+				i++;
+			}
+			if (i == node.count) {
+				return node;
+			}
+			removed = true;
+			node.count--;
+			System.arraycopy(node.items, i + 1, node.items, i, node.count - i);
+			System.arraycopy(node.ends, i + 1, node.ends, i, node.count - i);
+			if (node.count == 0) {
+				if (node.left == null) {
+					return node.right;
+				}
+				if (node.right == null) {
+					return node.left;
+				}
+				Node successor = node.right;
+				while (successor.left != null) {
+					successor = successor.left;
+				}
+				node.start = successor.start;
+				node.items = successor.items;
+				node.ends = successor.ends;
+				node.count = successor.count;
+				node.right = removeMin(node.right);
+			}
+		}
+		return balance(node);
+	}
+
+	private Node removeMin(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = removeMin(node.left);
+		return balance(node);
+	}
+
+	private static void add(Node node, long end, int item) {
+		if (node.count == node.items.length) {
+			node.items = Arrays.copyOf(node.items, node.count * 2);
+			node.ends = Arrays.copyOf(node.ends, node.count * 2);
+		}
+		node.items[node.count] = item;
+		node.ends[node.count] = end;
+		node.count++;
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static void update(Node node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < node.count; i++) {
+			max = Math.max(max, node.ends[i]);
+		}
+		if (node.left != null) {
+			max = Math.max(max, node.left.maxEnd);
+		}
+		if (node.right != null) {
+			max = Math.max(max, node.right.maxEnd);
+		}
+		node.maxEnd = max;
+	}
+
+	private Node balance(Node node) {
+		update(node);
+		int factor = height(node.left) - height(node.right);
+		if (factor > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		}
+		if (factor < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private Node rotateRight(Node node) {
+		Node pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private Node rotateLeft(Node node) {
+		Node pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+}
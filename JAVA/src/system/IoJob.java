@@ -0,0 +1,129 @@
+package system;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JFrame;
+import javax.swing.SwingWorker;
+
+import gui.ProgressDialog;
+
+/**
+ * this class runs import or export on background thread, so that event dispatch thread is not blocked by input and output. While the job runs,
+ * modal progress panel shows number of rows reported by Transmiter and allows to cancel the job. Cancelling is checked by Transmiter after every
+ * chunk or batch of rows, cancelled export is rolled back. Panel is hidden only when background thread has really stopped, so that the next job
+ * cannot overlap with it. When the job finishes successfully, given action is invoked once on event dispatch thread.
+ * @author Marta Bielecka
+ *
+ */
+class IoJob extends SwingWorker<Void, Integer> {
+
+	/**
+	 * Transmiter reporting transferred rows of the job
+	 */
+	private final Transmiter xPort;
+	/**
+	 * input or output operation run on background thread
+	 */
+	private final Runnable work;
+	/**
+	 * action invoked on event dispatch thread when operation succeeds, usually refreshing displayed data
+	 */
+	private final Runnable finish;
+	/**
+	 * panel showing progress of the job
+	 */
+	private final ProgressDialog dialog;
+	/**
+	 * true if user asked to cancel the job
+	 */
+	private final AtomicBoolean cancelRequested = new AtomicBoolean(false);
+	/**
+	 * number of rows transferred so far, may be reported by several threads of the job
+	 */
+	private final AtomicInteger rows = new AtomicInteger();
+
+	/**
+	 * constructs job, which is started by runAndWait method
+	 * @param frame frame over which progress panel is displayed
+	 * @param title title of progress panel
+	 * @param xPort Transmiter used by the operation
+	 * @param work operation run on background thread
+	 * @param finish action invoked on event dispatch thread when operation succeeds
+	 */
+	IoJob(JFrame frame, String title, Transmiter xPort, Runnable work, Runnable finish) {
+		this.xPort = xPort;
+		this.work = work;
+		this.finish = finish;
+		this.dialog = new ProgressDialog(frame, title, () -> cancelRequested.set(true));
+	}
+
+	/**
+	 * starts the job and shows progress panel until the job ends. Must be called on event dispatch thread, which keeps handling other events
+	 * while the panel is displayed
+	 * @return true if the job succeeded, false if it was cancelled before it finished
+	 * @throws RuntimeException if the operation failed
+	 */
+	public boolean runAndWait() {
+		execute();
+		if (!isDone()) {
+			dialog.setVisible(true);
+		}
+		try {
+			get();
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		} catch (ExecutionException e) {
+			if (cancelRequested.get()) {
+				return false;
+			}
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * runs the operation, passing rows reported by Transmiter to progress panel
+	 */
+	@Override
+	protected Void doInBackground() {
+		xPort.setProgressListener(transferred -> {
+			if (cancelRequested.get()) {
+				throw new CancellationException();
+			}
+			publish(rows.addAndGet(transferred));
+		});
+		try {
+			work.run();
+		} finally {
+			xPort.setProgressListener(null);
+		}
+		return null;
+	}
+
+	/**
+	 * shows the latest number of transferred rows
+	 */
+	@Override
+	protected void process(List<Integer> chunks) {
+		dialog.setRows(chunks.get(chunks.size() - 1));
+	}
+
+	/**
+	 * hides progress panel and invokes finishing action if the operation succeeded
+	 */
+	@Override
+	protected void done() {
+		dialog.setVisible(false);
+		dialog.dispose();
+		try {
+			get();
+			finish.run();
+		} catch (InterruptedException | ExecutionException e) {
+			// reported by runAndWait method
+		}
+	}
+}
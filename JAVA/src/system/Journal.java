@@ -0,0 +1,595 @@
+package system;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * this class records every change of events and contacts made by Manager in append-only journal files next to the Snapshot, so that changes are kept
+ * without rewriting whole snapshot. Every change is a small record - its length, CRC32 checksum and content: type of change, events as times in seconds
+ * kept by EventStore and texts as length followed by UTF-8 bytes, -1 standing for null. Events and contacts are recognized by their content, like
+ * in export of changes, so records do not depend on identifiers given by the store.
+ * <p>
+ * Records are collected in memory and written by a background thread with one write and one force of the FileChannel for all records collected
+ * since its previous run, so that adding an event does not wait for the disk. Changes of the last COMMIT_DELAY milliseconds can be lost if computer fails.
+ * <p>
+ * Every journal file has generation, being part of its name. When the journal grows, Manager starts a file of the next generation and writes snapshot
+ * marked with that generation, after which files of earlier generations are deleted. At start files not older than the snapshot are replayed on top of it,
+ * so that crash at any moment of this process loses nothing and applies no change twice. Record cut off by a crash ends replay of its file.
+ * @author Marta Bielecka
+ *
+ */
+class Journal {
+
+	/**
+	 * number beginning every journal file
+	 */
+	private static final int MAGIC = 0x4F524A4C;
+	/**
+	 * version of format written to files
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * time in milliseconds between writes of collected records
+	 */
+	private static final long COMMIT_DELAY = 50;
+	/**
+	 * largest length of record accepted while replaying, longer ones are treated as damaged
+	 */
+	private static final int MAX_RECORD = 16 * 1024 * 1024;
+	/**
+	 * length of text standing for null
+	 */
+	private static final int NO_TEXT = -1;
+
+	/**
+	 * record of added event
+	 */
+	private static final byte EVENT_ADDED = 1;
+	/**
+	 * record of deleted event
+	 */
+	private static final byte EVENT_DELETED = 2;
+	/**
+	 * record of replaced event, holding the event before and after the change
+	 */
+	private static final byte EVENT_REPLACED = 3;
+	/**
+	 * record of added contact
+	 */
+	private static final byte CONTACT_ADDED = 4;
+	/**
+	 * record of removed contact
+	 */
+	private static final byte CONTACT_REMOVED = 5;
+
+	/**
+	 * snapshot file, journal files are named after it
+	 */
+	private final File snapshot;
+	/**
+	 * size of journal file in bytes, above which it should be folded into snapshot
+	 */
+	private final long limit;
+	/**
+	 * records collected since last write
+	 */
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	/**
+	 * guards writing to the channel and switching files
+	 */
+	private final Object commitLock = new Object();
+	/**
+	 * thread writing collected records
+	 */
+	private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "journal-commit");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * generation of the current file
+	 */
+	private long generation;
+	/**
+	 * channel of the current file
+	 */
+	private FileChannel channel;
+	/**
+	 * number of bytes written to the current file
+	 */
+	private long written;
+	/**
+	 * number of records replayed when journal was opened
+	 */
+	private int replayed;
+
+	/**
+	 * constructs journal, use open method
+	 * @param snapshot snapshot file
+	 * @param limit size of journal file in bytes, above which it should be folded into snapshot
+	 */
+	private Journal(File snapshot, long limit) {
+		this.snapshot = snapshot;
+		this.limit = limit;
+	}
+
+	/**
+	 * replays journal files not folded into snapshot onto its content, deletes files already folded into it or holding no records and starts new
+	 * journal file
+	 * @param snapshot snapshot file
+	 * @param generation generation of snapshot, 0 if there is no snapshot
+	 * @param limit size of journal file in bytes, above which it should be folded into snapshot
+	 * @param events events read from snapshot, changed by replayed records
+	 * @param contacts contacts read from snapshot, changed by replayed records
+	 * @return journal recording further changes
+	 * @throws IOException if journal files cannot be read or new file cannot be created
+	 */
+	static Journal open(File snapshot, long generation, long limit, EventStorage events, List<Contact> contacts) throws IOException {
+		Journal journal = new Journal(snapshot, limit);
+		long next = generation;
+		for (Map.Entry<Long, File> file : journal.files().entrySet()) {
+			if (file.getKey() < generation) {
+				Files.delete(file.getValue().toPath());
+			} else {
+				int count = replay(file.getValue(), events, contacts);
+				if (count == 0) {
+					Files.delete(file.getValue().toPath());
+				}
+				journal.replayed += count;
+				next = file.getKey() + 1;
+			}
+		}
+		journal.start(next);
+		journal.committer.scheduleWithFixedDelay(journal::commit, COMMIT_DELAY, COMMIT_DELAY, TimeUnit.MILLISECONDS);
+		return journal;
+	}
+
+	/**
+	 * returns number of records replayed when journal was opened
+	 * @return number of records
+	 */
+	public int getReplayed() {
+		return replayed;
+	}
+
+	/**
+	 * tells if the current file outgrew its limit and should be folded into snapshot
+	 * @return true if file is too big
+	 */
+	public synchronized boolean isFull() {
+		return written + pending.size() > limit;
+	}
+
+	/**
+	 * records added event
+	 * @param e added event
+	 */
+	public void eventAdded(Event e) {
+		append(EVENT_ADDED, out -> writeEvent(out, e));
+	}
+
+	/**
+	 * records deleted event
+	 * @param e content of event before deleting
+	 */
+	public void eventDeleted(Event e) {
+		append(EVENT_DELETED, out -> writeEvent(out, e));
+	}
+
+	/**
+	 * records replaced event
+	 * @param original content of event before the change
+	 * @param e content of event after the change
+	 */
+	public void eventReplaced(Event original, Event e) {
+		append(EVENT_REPLACED, out -> {
+			writeEvent(out, original);
+			writeEvent(out, e);
+		});
+	}
+
+	/**
+	 * records added contact
+	 * @param c added contact
+	 */
+	public void contactAdded(Contact c) {
+		append(CONTACT_ADDED, out -> writeContact(out, c));
+	}
+
+	/**
+	 * records removed contact
+	 * @param c removed contact
+	 */
+	public void contactRemoved(Contact c) {
+		append(CONTACT_REMOVED, out -> writeContact(out, c));
+	}
+
+	/**
+	 * writes collected records to the current file and starts file of the next generation, to which further records go.
+	 * Caller must make sure that no change is recorded meanwhile, and then writes snapshot with the returned generation
+	 * @return generation of the new file
+	 * @throws IOException if files cannot be written
+	 */
+	public long rotate() throws IOException {
+		synchronized (commitLock) {
+			commit();
+			channel.close();
+			start(generation + 1);
+			return generation;
+		}
+	}
+
+	/**
+	 * deletes journal files of generations earlier than given one, after they were folded into snapshot
+	 * @param generation generation of written snapshot
+	 */
+	public void deleteBefore(long generation) {
+		for (Map.Entry<Long, File> file : files().headMap(generation).entrySet()) {
+			if (!file.getValue().delete()) {
+				System.err.println(file.getValue() + ": cannot delete journal file");
+			}
+		}
+	}
+
+	/**
+	 * writes collected records and closes the current file
+	 */
+	public void close() {
+		committer.shutdown();
+		synchronized (commitLock) {
+			commit();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * creates file of given generation and makes it the current one
+	 * @param generation generation of the file
+	 * @throws IOException if file cannot be created
+	 */
+	private void start(long generation) throws IOException {
+		FileChannel created = FileChannel.open(file(generation).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(16);
+		header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+		while (header.hasRemaining()) {
+			created.write(header);
+		}
+		created.force(true);
+		this.generation = generation;
+		this.channel = created;
+		this.written = 0;
+	}
+
+	/**
+	 * writes records collected since previous call to the current file and forces them to the disk, all with one write and one force
+	 */
+	private void commit() {
+		synchronized (commitLock) {
+			byte[] data;
+			synchronized (this) {
+				if (pending.size() == 0) {
+					return;
+				}
+				data = pending.toByteArray();
+				pending.reset();
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+				synchronized (this) {
+					written += data.length;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * content of record written by append method
+	 */
+	private interface Content {
+		/**
+		 * writes content of record
+		 * @param out stream to write to
+		 * @throws IOException never thrown by stream in memory
+		 */
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * adds record to records collected for the next write
+	 * @param type type of record
+	 * @param content content following type
+	 */
+	private void append(byte type, Content content) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(type);
+			content.write(out);
+			byte[] record = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(record);
+			synchronized (this) {
+				DataOutputStream header = new DataOutputStream(pending);
+				header.writeInt(record.length);
+				header.writeInt((int) crc.getValue());
+				pending.write(record);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * returns journal file of given generation
+	 * @param generation generation of the file
+	 * @return file named after snapshot file and generation
+	 */
+	private File file(long generation) {
+		return new File(snapshot.getPath() + "." + generation + ".journal");
+	}
+
+	/**
+	 * finds existing journal files
+	 * @return files keyed by their generation
+	 */
+	private TreeMap<Long, File> files() {
+		TreeMap<Long, File> found = new TreeMap<>();
+		File directory = snapshot.getAbsoluteFile().getParentFile();
+		String prefix = snapshot.getName() + ".";
+		String[] names = directory == null ? null : directory.list();
+		if (names == null) {
+			return found;
+		}
+		for (String name : names) {
+			if (name.startsWith(prefix) && name.endsWith(".journal")) {
+				try {
+					found.put(Long.parseLong(name.substring(prefix.length(), name.length() - ".journal".length())), new File(directory, name));
+				} catch (NumberFormatException e) {
+					// not a journal file
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * applies records of journal file to events and contacts. Replay ends at the first incomplete or damaged record
+	 * @param file journal file
+	 * @param events events to change
+	 * @param contacts contacts to change
+	 * @return number of applied records
+	 * @throws IOException if file cannot be read or is not a journal file
+	 */
+	private static int replay(File file, EventStorage events, List<Contact> contacts) throws IOException {
+		int count = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException(file + ": not a journal file");
+				}
+				in.readLong();
+			} catch (EOFException e) {
+				// file created just before crash
+				return 0;
+			}
+			CRC32 crc = new CRC32();
+			while (true) {
+				byte[] record;
+				try {
+					int length = in.readInt();
+					int checksum = in.readInt();
+					if (length < 1 || length > MAX_RECORD) {
+						break;
+					}
+					record = new byte[length];
+					in.readFully(record);
+					crc.reset();
+					crc.update(record);
+					if ((int) crc.getValue() != checksum) {
+						break;
+					}
+				} catch (EOFException e) {
+					break;
+				}
+				apply(ByteBuffer.wrap(record), events, contacts);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * applies one record to events and contacts. Events and contacts to delete or replace are found by their content, the first matching one is changed
+	 * @param record content of record
+	 * @param events events to change
+	 * @param contacts contacts to change
+	 */
+	private static void apply(ByteBuffer record, EventStorage events, List<Contact> contacts) {
+		switch (record.get()) {
+		case EVENT_ADDED:
+			events.add(readEvent(record));
+			break;
+		case EVENT_DELETED:
+			int deleted = find(events, readEvent(record));
+			if (deleted > 0) {
+				events.remove(deleted);
+			}
+			break;
+		case EVENT_REPLACED:
+			int replaced = find(events, readEvent(record));
+			Event e = readEvent(record);
+			if (replaced < 0 || !events.replace(replaced, e)) {
+				events.add(e);
+			}
+			break;
+		case CONTACT_ADDED:
+			contacts.add(readContact(record));
+			break;
+		case CONTACT_REMOVED:
+			Contact removed = readContact(record);
+			for (Iterator<Contact> it = contacts.iterator(); it.hasNext();) {
+				if (sameContact(it.next(), removed)) {
+					it.remove();
+					break;
+				}
+			}
+			break;
+		default:
+			System.err.println("unknown journal record skipped");
+		}
+	}
+
+	/**
+	 * finds event with the same content as given one
+	 * @param events events to search
+	 * @param e content of event
+	 * @return identifier of found event, -1 if there is none
+	 */
+	private static int find(EventStorage events, Event e) {
+		long start = EventStore.toSeconds(e.getStart());
+		for (Event candidate : events.between(start, start + 1)) {
+			if (candidate.getStart().equals(e.getStart()) && candidate.getEnd().equals(e.getEnd())
+					&& Objects.equals(candidate.getTittle(), e.getTittle()) && Objects.equals(candidate.getNote(), e.getNote())
+					&& Objects.equals(candidate.getPlace(), e.getPlace()) && candidate.hasNotification() == e.hasNotification()
+					&& (!e.hasNotification() || candidate.getNotification().getBefore().equals(e.getNotification().getBefore()))
+					&& (candidate.getPerson() == null ? e.getPerson() == null : e.getPerson() != null && sameContact(candidate.getPerson(), e.getPerson()))) {
+				return candidate.getId();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * compares contacts by content
+	 * @param a first contact
+	 * @param b second contact
+	 * @return true if name, company, e-mail and phone are equal
+	 */
+	private static boolean sameContact(Contact a, Contact b) {
+		return Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getCompany(), b.getCompany())
+				&& Objects.equals(a.getEmail(), b.getEmail()) && Objects.equals(a.getPhone(), b.getPhone());
+	}
+
+	/**
+	 * writes content of event
+	 * @param out stream to write to
+	 * @param e event to write, must have start and end time
+	 * @throws IOException never thrown by stream in memory
+	 */
+	private static void writeEvent(DataOutputStream out, Event e) throws IOException {
+		out.writeLong(EventStore.toSeconds(e.getStart()));
+		out.writeLong(EventStore.toSeconds(e.getEnd()));
+		out.writeLong(e.hasNotification() ? EventStore.toSeconds(e.getNotification().getBefore()) : EventStore.NO_ALARM);
+		writeText(out, e.getTittle());
+		writeText(out, e.getNote());
+		writeText(out, e.getPlace());
+		out.writeBoolean(e.getPerson() != null);
+		if (e.getPerson() != null) {
+			writeContact(out, e.getPerson());
+		}
+	}
+
+	/**
+	 * reads event written by writeEvent
+	 * @param in content of record
+	 * @return read event
+	 */
+	private static Event readEvent(ByteBuffer in) {
+		long start = in.getLong();
+		long end = in.getLong();
+		long alarm = in.getLong();
+		Event e = new Event(readText(in), EventStore.toDateTime(start), EventStore.toDateTime(end), readText(in), readText(in),
+				alarm == EventStore.NO_ALARM ? null : EventStore.toDateTime(alarm));
+		if (in.get() != 0) {
+			e.setPerson(readContact(in));
+		}
+		return e;
+	}
+
+	/**
+	 * writes content of contact
+	 * @param out stream to write to
+	 * @param c contact to write
+	 * @throws IOException never thrown by stream in memory
+	 */
+	private static void writeContact(DataOutputStream out, Contact c) throws IOException {
+		writeText(out, c.getName());
+		writeText(out, c.getCompany());
+		writeText(out, c.getEmail());
+		writeText(out, c.getPhone());
+	}
+
+	/**
+	 * reads contact written by writeContact
+	 * @param in content of record
+	 * @return read contact
+	 */
+	private static Contact readContact(ByteBuffer in) {
+		return new Contact(readText(in), readText(in), readText(in), readText(in));
+	}
+
+	/**
+	 * writes text as its length in bytes followed by UTF-8 bytes
+	 * @param out stream to write to
+	 * @param text text to write, may be null
+	 * @throws IOException never thrown by stream in memory
+	 */
+	private static void writeText(DataOutputStream out, String text) throws IOException {
+		if (text == null) {
+			out.writeInt(NO_TEXT);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * reads text written by writeText
+	 * @param in content of record
+	 * @return read text, may be null
+	 */
+	private static String readText(ByteBuffer in) {
+		int length = in.getInt();
+		if (length == NO_TEXT) {
+			return null;
+		}
+		String text = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return text;
+	}
+}
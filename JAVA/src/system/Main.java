@@ -3,6 +3,7 @@ package system;
 import java.awt.EventQueue;
 
 import dane.AppParameters;
+import dane.SoundPlayer;
 import gui.Application;
 import system.Manager;
 
@@ -14,12 +15,15 @@ import system.Manager;
 public class Main {
 
 	/**
-	 * initializes Singleton class, passing table of program arguments to it
+	 * initializes Singleton class, passing table of program arguments to it, opens line with alarm sound in background and makes sure
+	 * that database connections are closed when application shuts down
 	 * @param args
 	 */
 	public static void main(String[] args) {
 		
 		AppParameters.initialize(args);
+		SoundPlayer.getInstance().preload(AppParameters.getInstance().getSound());
+		Runtime.getRuntime().addShutdownHook(new Thread(DatabaseSession.getInstance()::closeAll, "database-close"));
 		view();
 	}
 	
@@ -1,13 +1,16 @@
 package system;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JFrame;
-import javax.swing.JOptionPane;
 
 import dane.*;
 import gui.EventEditingDialog;
@@ -22,23 +25,102 @@ import system.Transmiter;
 public class Manager {
 
 	/**
-	 * list of events
+	 * storage of events. By default columnar store in memory, with indexes allowing to find events overlapping given period without scanning all events.
+	 * With program argument storage=database events imported from database are left in the database file and only events of queried period are loaded,
+	 * with storage=mapped events are kept in memory mapped files outside Java heap, with storage=hsqldb events are kept in native HSQLDB database
 	 */
-	private ArrayList<Event> eventy = new ArrayList<>();
+	private volatile EventStorage eventy = new EventStore();
+	/**
+	 * true if events imported from database should be kept in the database file instead of memory, taken from program argument storage=database
+	 */
+	private boolean eventsInDatabase = AppParameters.getOption("storage", "memory").equals("database");
+	/**
+	 * true if events should be kept outside Java heap, taken from program argument storage=mapped
+	 */
+	private boolean eventsMapped = AppParameters.getOption("storage", "memory").equals("mapped");
+	/**
+	 * true if events and contacts should be kept in native HSQLDB database instead of snapshot and journal, taken from program argument storage=hsqldb
+	 */
+	private boolean eventsInHsqldb = AppParameters.getOption("storage", "memory").equals("hsqldb");
+	/**
+	 * path of HSQLDB database files without extension, taken from program argument hsqldb=path
+	 */
+	private File hsqldbPath = new File(AppParameters.getOption("hsqldb", "organizer-db/organizer"));
+	/**
+	 * native HSQLDB database holding events and contacts, null unless storage=hsqldb. Every change is written to it at once, so journal is not used
+	 */
+	private HsqldbStorage hsqldb;
 	/**
 	 * list of contacts
 	 */
-	private ArrayList<Contact> kontakty = new ArrayList<>();
+	private volatile ArrayList<Contact> kontakty = new ArrayList<>();
 	/**
 	 * Transmiter object responsible for i/o operations and streams handling
 	 */
 	private Transmiter xPort = new Transmiter();
-	
+	/**
+	 * scheduler of alarms of events in the store, kept up to date when events are added, replaced and deleted
+	 */
+	private AlarmScheduler alarms = AlarmScheduler.create(this::playAlarm);
+	/**
+	 * passes due alarms to notification panel on event dispatch thread, null until alarms are started
+	 */
+	private AlarmDispatcher notifications;
+	/**
+	 * changes of events and contacts made since data was last imported from or exported to database, allowing to export only these changes
+	 */
+	private EventChanges changes = new EventChanges();
+	/**
+	 * file with snapshot of events and contacts, from which data is loaded at start and to which it is saved at exit, taken from program argument
+	 * snapshot=file
+	 */
+	private File snapshot = new File(AppParameters.getOption("snapshot", "organizer.snapshot"));
+	/**
+	 * default size of journal file in bytes, above which it is folded into snapshot
+	 */
+	private static final long DEFAULT_JOURNAL_LIMIT = 1024 * 1024;
+	/**
+	 * the smallest size of journal file in bytes, above which it is folded into snapshot, so that snapshot is not written after every change
+	 */
+	private static final long MIN_JOURNAL_LIMIT = 4 * 1024;
+	/**
+	 * size of journal file in bytes, above which it is folded into snapshot, taken from program argument journal=bytes
+	 */
+	private long journalLimit = Math.max(MIN_JOURNAL_LIMIT, AppParameters.getNumberOption("journal", DEFAULT_JOURNAL_LIMIT));
+	/**
+	 * journal recording every change of events and contacts made since snapshot was written, null until snapshot is loaded
+	 */
+	private Journal journal;
+	/**
+	 * thread folding journal into snapshot in background
+	 */
+	private ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "journal-compact");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * true while journal is being folded in background
+	 */
+	private AtomicBoolean compacting = new AtomicBoolean();
+	/**
+	 * guards folding journal into snapshot, so that snapshots are written one at a time
+	 */
+	private final Object compactLock = new Object();
+	/**
+	 * number of events shown in list of all events when events are kept in database
+	 */
+	private static final int LISTED_FROM_DATABASE = 1000;
+	/**
+	 * description of problem met while loading snapshot or journal, to be shown to the user, null if data was loaded without problems
+	 */
+	private String loadProblem;
+
 	/**
 	 * returns list of all events
-	 * @return list of all events
+	 * @return list of all events, ordered by start time
 	 */
-	public ArrayList<Event> getEventy() { return eventy; }
+	public ArrayList<Event> getEventy() { return new ArrayList<>(eventy.all()); }
 	/**
 	 * returns list of contacts
 	 * @return list of contacts
@@ -57,10 +139,20 @@ public class Manager {
 
 	/**
 	 * returns all events
-	 * @return list of all events
+	 * @return list of all events, ordered by start time
 	 */
 	public List<Event> getAllEvents(){
-		return eventy;
+		return eventy.all();
+	}
+
+	/**
+	 * returns events shown in list of all events. If events are kept in database, only the earliest LISTED_FROM_DATABASE of them are read,
+	 * so that memory used does not depend on size of the database
+	 * @return list of events, ordered by start time
+	 */
+	public List<Event> getListedEvents(){
+		EventStorage events = eventy;
+		return events.getDatabase() != null ? events.first(LISTED_FROM_DATABASE) : events.all();
 	}
 	
 	/**
@@ -79,108 +171,141 @@ public class Manager {
 	 * @return list of events in given month and year
 	 */
 	public List<Event> getEventsInMonth(int year, int month){
-		ArrayList<Event> events = new ArrayList<Event>(); 
-		for(int i = 0; i < eventy.size(); i++) {
-			if(eventy.get(i).getStart().getYear() == year || eventy.get(i).getEnd().getYear() == year) {
-				if(eventy.get(i).getStart().getMonthValue() == month || eventy.get(i).getEnd().getMonthValue() == month ) {
-					events.add(eventy.get(i));
-				}
-		    }
+		LocalDate firstDay = LocalDate.of(year, month, 1);
+		return getEventsBetween(firstDay.atStartOfDay(), firstDay.plusMonths(1).atStartOfDay());
+	}
+
+	/**
+	 * returns events of given month mapped on days of month they take place in. Event lasting several days is added to every of these days
+	 * @param yearAndMonth month to return events for
+	 * @return map of day of month to list of events in that day, days without events are not present in the map
+	 */
+	public Map<Integer, List<Event>> getEventsAcrossDays(LocalDate yearAndMonth) {
+		Map<Integer, List<Event>> eventsAcrossDays = new HashMap<>();
+		LocalDate firstDay = yearAndMonth.withDayOfMonth(1);
+		long firstEpochDay = firstDay.toEpochDay();
+		for(Map.Entry<Long, List<Event>> day : eventy.acrossDays(firstEpochDay, firstDay.lengthOfMonth()).entrySet()) {
+			eventsAcrossDays.put((int) (day.getKey() - firstEpochDay) + 1, day.getValue());
 		}
-		return events; 
+		return eventsAcrossDays;
 	}
-	
+
 	/**
 	 * returns events in given year
 	 * @param date date indicating year we want to get events for
 	 * @return list of events in given year
 	 */
 	public List<Event> getEventsInYear (LocalDate date) {
-		int year = date.getYear();
-		ArrayList<Event> events = new ArrayList<Event>();
-		for(int i = 0; i < eventy.size(); i++) {
-			if(eventy.get(i).getStart().getYear() == year || eventy.get(i).getEnd().getYear() == year) {
-				events.add(eventy.get(i));
-			}
-		}
-		return events;
+		LocalDate firstDay = LocalDate.of(date.getYear(), 1, 1);
+		return getEventsBetween(firstDay.atStartOfDay(), firstDay.plusYears(1).atStartOfDay());
 	}
-	
+
 	/**
 	 * returns events in given week
 	 * @param date date indicating week to get events for
 	 * @return list of events in given week
 	 */
 	public List<Event> getEventsInWeek(LocalDate date){
-		int dayindex = date.getDayOfWeek().getValue() - 1;
-		int day = date.getDayOfMonth();
-		int month = date.getMonthValue();
-		int year = date.getYear();
-		LocalDateTime startDay = LocalDateTime.of(year, month, day - dayindex,0,0,1);
-		LocalDateTime endDay = LocalDateTime.of(year, month, day + 6 - dayindex,23,59,59);
-		ArrayList<Event> events = new ArrayList<Event>();
-		for(int i = 0; i < eventy.size(); i++) {
-			if((eventy.get(i).getStart().isBefore(endDay) && eventy.get(i).getStart().isAfter(startDay))|| 
-					(eventy.get(i).getEnd().isAfter(startDay) && eventy.get(i).getEnd().isBefore(endDay))) {
-				events.add(eventy.get(i));
-			}		
-		}
-		return events;		
+		LocalDate monday = date.minusDays(date.getDayOfWeek().getValue() - 1);
+		return getEventsBetween(monday.atStartOfDay(), monday.plusWeeks(1).atStartOfDay());
 	}
-	
+
 	/**
-	 * returns events in given day
+	 * returns events in given day, looking them up directly in events mapped on days
 	 * @param date date indicating day to get events for
-	 * @return list of events in given day
+	 * @return list of events in given day, ordered by start time
 	 */
 	public List<Event> getEventsInDay(LocalDate date){
-		int day = date.getDayOfMonth();
-		int month = date.getMonthValue();
-		int year = date.getYear();
-		ArrayList<Event> events = new ArrayList<Event>();
-		for(int i = 0; i < eventy.size(); i++) {
-			if(eventy.get(i).getStart().getYear() == year || eventy.get(i).getEnd().getYear() == year) {
-				if(eventy.get(i).getStart().getMonthValue() == month || eventy.get(i).getEnd().getMonthValue() == month ) {
-					if(eventy.get(i).getStart().getDayOfMonth() == day || eventy.get(i).getEnd().getDayOfMonth() == day) {
-						events.add(eventy.get(i));
-						}
-					}	
-				}		
-		}
-		return events;
+		return eventy.inDay(date.toEpochDay());
+	}
+
+	/**
+	 * returns events overlapping given period, using events index. Event overlaps the period if it begins before the period ends and ends after the period begins.
+	 * Events lasting no time at all are returned if they take place inside the period. All other period queries are built on top of this method
+	 * @param from beginning of the period, inclusive
+	 * @param to end of the period, exclusive
+	 * @return list of events overlapping given period, ordered by start time
+	 */
+	public List<Event> getEventsBetween(LocalDateTime from, LocalDateTime to) {
+		return eventy.between(EventStore.toSeconds(from), EventStore.toSeconds(to));
 	}
 
 	/**
 	 * shows event editing dialog
 	 */
 	public void eventEditing() {
-		EventEditingDialog.showDialog(eventy.get(0));
+		EventEditingDialog.showDialog(eventy.all().get(0));
 	}
 	
 	/**
-	 * adds new event to event list
+	 * adds new event to event store, giving it new identifier, and records it in journal. Events without start or end time are not added
 	 * @param e event to add
 	 */
-	public void addEvent(Event e) {
-		if(e != null) {
-		eventy.add(e);
+	public synchronized void addEvent(Event e) {
+		if(insertEvent(e) && journalsEvents()) {
+			journal.eventAdded(e);
+			journaled();
 		}
 	}
 
 	/**
-	 * deletes event from event list
-	 * @param numberOfEvent index of event to delete
+	 * tells if changes of events are recorded in journal. Events kept in database are written to it at once, and are not stored in snapshot,
+	 * so their changes are not recorded
+	 * @return true if journal is open and events are not kept in database
 	 */
-	public void deleteEvent(int numberOfEvent) {
-		eventy.remove(numberOfEvent);
+	private boolean journalsEvents() {
+		return journal != null && eventy.getDatabase() == null;
 	}
-	
+
+	/**
+	 * adds new event to event store, giving it new identifier, without recording it in journal
+	 * @param e event to add
+	 * @return true if event was added, false if it has no start or end time
+	 */
+	private boolean insertEvent(Event e) {
+		if(e != null && e.getStart() != null && e.getEnd() != null) {
+			eventy.add(e);
+			scheduleAlarm(e);
+			changes.eventInserted(e.getId());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * deletes event from event store
+	 * @param numberOfEvent identifier of event to delete
+	 */
+	public synchronized void deleteEvent(int numberOfEvent) {
+		Event original = journalsEvents() || changes.needsOriginal(numberOfEvent) ? eventy.get(numberOfEvent) : null;
+		if(eventy.remove(numberOfEvent)) {
+			changes.eventDeleted(numberOfEvent, original);
+			if(journalsEvents() && original != null) {
+				journal.eventDeleted(original);
+				journaled();
+			}
+		}
+		alarms.cancel(numberOfEvent);
+	}
+
 	/**
-	 * deletes event from event list
-	 * @param e event to delete
+	 * deletes event from event store
+	 * @param e event to delete, recognized by its identifier
 	 */
 	public void deleteEvent(Event e) {
-		eventy.remove(e);
+		deleteEvent(e.getId());
+	}
+
+	/**
+	 * schedules alarm of event added to the store, or cancels it if event has no alarm
+	 * @param e event with identifier given by the store
+	 */
+	private void scheduleAlarm(Event e) {
+		if(e.hasNotification()) {
+			alarms.schedule(e.getId(), EventStore.toSeconds(e.getNotification().getBefore()));
+		} else {
+			alarms.cancel(e.getId());
+		}
 	}
 
 	/**
@@ -200,31 +325,56 @@ public class Manager {
 		if (phone != "")
 			temp.setPhone(phone);
 
-		kontakty.add(temp);
+		addContact(temp);
 	}
 	
 	/**
 	 * adds contact to the contacts list 
 	 * @param c contact to add
 	 */
-	public void addContact(Contact c) {
+	public synchronized void addContact(Contact c) {
 		kontakty.add(c);
+		changes.contactsChanged();
+		if(hsqldb != null) {
+			hsqldb.addContact(c);
+		}
+		if(journal != null) {
+			journal.contactAdded(c);
+			journaled();
+		}
 	}
 
 	/**
 	 * removes contact from the contacts list
 	 * @param numberOfContact index of contact to remove
 	 */
-	public void removeContact(int numberOfContact) {
-		kontakty.remove(numberOfContact);
+	public synchronized void removeContact(int numberOfContact) {
+		Contact c = kontakty.remove(numberOfContact);
+		changes.contactsChanged();
+		if(hsqldb != null) {
+			hsqldb.removeContact(c);
+		}
+		if(journal != null) {
+			journal.contactRemoved(c);
+			journaled();
+		}
 	}
 	
 	/**
 	 * removes contact from the contacts list
 	 * @param c contact to remove
 	 */
-	public void removeContact(Contact c) {
-		kontakty.remove(c);
+	public synchronized void removeContact(Contact c) {
+		if(kontakty.remove(c)) {
+			changes.contactsChanged();
+			if(hsqldb != null) {
+				hsqldb.removeContact(c);
+			}
+			if(journal != null) {
+				journal.contactRemoved(c);
+				journaled();
+			}
+		}
 	}
 
 	/**
@@ -232,94 +382,482 @@ public class Manager {
 	 * @param dueDate date before which old events should be removed
 	 */
 	public void removeOldEvents(LocalDateTime dueDate) {
-		for(int i = 0; i < eventy.size(); i ++) {
-			if(eventy.get(i).getEnd().isBefore(dueDate)) {
-				eventy.remove(i);
-			}
+		for(int id : eventy.endingBefore(EventStore.toSeconds(dueDate))) {
+			deleteEvent(id);
 		}
 	}
 
 	/**
-	 * invokes playAlarm method repeatedly
-	 * @param frame
+	 * starts alarm scheduler, which invokes playAlarm method when alarm of any event is due
+	 * @param frame frame over which notification panel will be displayed
 	 */
 	public void checkDueAlarms(JFrame frame) {
-		Runnable drawRunnable = new Runnable() {
-			
-			@Override
-			public void run() {
-				playAlarm(frame);	
+		notifications = new AlarmDispatcher(frame);
+		alarms.start();
+	}
+	
+	/**
+	 * called by alarm scheduler when alarm of event is due. Removes alarm from the event, plays sound and passes the event to notification panel without waiting for the user
+	 * @param id identifier of event which alarm is due
+	 */
+	private void playAlarm(int id) {
+		Event e;
+		synchronized(this) {
+			e = eventy.get(id);
+			if (e == null || !e.hasNotification()) {
+				return;
+			}
+			changes.eventUpdated(id, e);
+			eventy.clearAlarm(id);
+			if(journalsEvents()) {
+				Event cleared = new Event(e.getTittle(), e.getStart(), e.getEnd(), e.getNote(), e.getPlace(), null);
+				cleared.setPerson(e.getPerson());
+				journal.eventReplaced(e, cleared);
+				journaled();
 			}
-		};
-		
-		ScheduledExecutorService exec = Executors.newScheduledThreadPool(1);
-		exec.scheduleAtFixedRate(drawRunnable, 0, 20, TimeUnit.SECONDS);
+		}
+		e.playAlarmSound();
+		notifications.publish(e);
 	}
 	
 	/**
-	 * checks if any event on the list has alarm to display. If so plays sound and shows dialog with information about coming event
-	 * @param frame component in which message dialog will be displayed
+	 * imports contacts and events from database of given name. Afterwards changes are recorded against this database, events held before import
+	 * are recorded as added. If events are kept in database, they are not loaded, and events held before import are added to the database; events
+	 * of files whose events table has no id column are loaded like without storage=database, until the file is upgraded.
+	 * Contacts and events are read in parallel into new collections, which replace the current ones only when whole import succeeds,
+	 * so failed or cancelled import changes nothing. Imported data is written to snapshot at once instead of journal. Database is read through
+	 * StorageEngine chosen by Transmiter, Access engine unless configured otherwise
+	 * @param baza name of database file to import data from
+	 */
+	public void importFromDatabase(String baza) {
+        StorageEngine engine = xPort.openEngine(new File(baza), Transmiter.ACCESS);
+        try {
+        	importFrom(engine, baza);
+        } finally {
+        	engine.close();
+        }
+        fold();
+	}
+
+	/**
+	 * imports contacts and events through given engine, as described in importFromDatabase
+	 * @param engine opened engine reading database
+	 * @param baza name of database file to import data from
 	 */
-	public void playAlarm(JFrame frame) {
-		Iterator<Event> it = eventy.iterator();
+	private void importFrom(StorageEngine engine, String baza) {
+        if(eventsInDatabase && xPort.schema(baza).keyed) {
+        	ArrayList<Contact> contacts = new ArrayList<>();
+        	engine.streamContacts(contacts::addAll);
+        	synchronized(compactLock) {
+        		EventStorage.View earlier;
+        		synchronized(this) {
+        			kontakty = contacts;
+        			earlier = openEventsInDatabase(baza);
+        		}
+        		insertEarlier(earlier);
+        	}
+        	return;
+        }
+        ParallelImport imported = new ParallelImport(engine, newEventStorage());
+        try {
+        	imported.run();
+        } catch (RuntimeException e) {
+        	imported.getEvents().close();
+        	throw e;
+        }
+        synchronized(compactLock) {
+        	EventStorage.View earlier;
+        	synchronized(this) {
+        		earlier = eventy.view();
+        		replaceData(imported.getContacts(), imported.getEvents());
+        		changes.reset(baza);
+        	}
+        	insertEarlier(earlier);
+        }
+	}
 
-		while (it.hasNext()) {
-			Event e = it.next();
+	/**
+	 * adds events held before import to imported events, one chunk at a time, so that lock of the Manager is held for one chunk only and events
+	 * are never listed all at once. Snapshot is not written meanwhile, because the caller holds compactLock
+	 * @param earlier view of events held before import, closed afterwards, null if there are none
+	 */
+	private void insertEarlier(EventStorage.View earlier) {
+		try(EventStorage.View view = earlier) {
+			if(view != null) {
+				view.stream(chunk -> {
+					synchronized(this) {
+						for(Event e : chunk) {
+							insertEvent(e);
+						}
+					}
+				});
+			}
+		}
+	}
 
-			if (e.getNotification() != null && e.getNotification().getBefore() != null) {
-				LocalDateTime dateOfAlarm = e.getNotification().getBefore();
-				
-				if (dateOfAlarm.isBefore(LocalDateTime.now())) {
-					e.playAlarmSound();
-					JOptionPane.showMessageDialog(frame, "Event " + e.getTittle() + " will begin soon");
-					e.setNotification(null);
+	/**
+	 * loads events and contacts from snapshot file, if it exists, replacing current ones, and replays on top of them changes recorded in journal
+	 * since the snapshot was written. Snapshot is read instead of database or XML file at start of the application, which is much faster.
+	 * Afterwards every change is recorded in journal, which is folded into new snapshot in background when it grows. Damaged snapshot is left unread
+	 * and renamed to file with extension .corrupt, so that the next snapshot does not overwrite it, and the problem is returned by getLoadProblem.
+	 * If snapshot tells that events are kept in database file, which it does after import with storage=database, events are opened in that
+	 * database again instead of being read from snapshot. With storage=hsqldb data is opened in HSQLDB database instead, falling back to snapshot
+	 * if the database cannot be opened
+	 */
+	public synchronized void loadSnapshot() {
+		if(eventsInHsqldb) {
+			try {
+				hsqldb = new HsqldbStorage(hsqldbPath);
+				kontakty = hsqldb.contacts();
+				replaceEvents(hsqldb);
+				changes.reset(null);
+				return;
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				hsqldb = null;
+			}
+		}
+		EventStorage events = newEventStorage();
+		ArrayList<Contact> contacts = new ArrayList<>();
+		long generation = 0;
+		try {
+			if(snapshot.isFile()) {
+				Snapshot loaded = Snapshot.read(snapshot, events);
+				contacts = loaded.getContacts();
+				generation = loaded.getGeneration();
+				if(loaded.getDatabase() != null) {
+					events = reopenDatabase(loaded.getDatabase(), events);
 				}
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			events.clear();
+			loadProblem = "Snapshot of events and contacts is damaged and was not loaded:\n" + e.getMessage() + "\n" + setAside(snapshot);
+		}
+		try {
+			journal = Journal.open(snapshot, generation, journalLimit, events, contacts);
+		} catch (IOException e) {
+			e.printStackTrace();
+			loadProblem = (loadProblem == null ? "" : loadProblem + "\n\n") + "Journal of changes cannot be opened, changes will not be saved:\n" + e.getMessage();
+		}
+		kontakty = contacts;
+		replaceEvents(events);
+		changes.reset(null);
+		if(journal != null && journal.getReplayed() > 0) {
+			compactLater();
 		}
 	}
-	
+
 	/**
-	 * imports contacts and events from database of given name
-	 * @param baza name of database file to import data from
+	 * opens events kept in database file named in snapshot. If the database cannot be opened, the problem is kept for getLoadProblem
+	 * and events are left empty until database is imported again
+	 * @param baza name of database file keeping events
+	 * @param empty empty storage of events, returned if the database cannot be opened and closed otherwise
+	 * @return storage of events
 	 */
-	public void importFromDatabase(String baza) {
-        kontakty = xPort.bdImportKontakty(baza);
-//        eventy = xPort.bdImportEventy(baza);
-        eventy.addAll(xPort.bdImportEventy(baza));
+	private EventStorage reopenDatabase(String baza, EventStorage empty) {
+		try {
+			if(!new File(baza).isFile()) {
+				throw new RuntimeException(baza + ": file does not exist");
+			}
+			EventStorage events = new DatabaseEventStorage(baza, xPort);
+			empty.close();
+			return events;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			loadProblem = "Events are kept in database which cannot be opened, import it again to see them:\n" + e.getMessage();
+			return empty;
+		}
+	}
+
+	/**
+	 * renames damaged snapshot file to file with extension .corrupt, replacing earlier damaged file
+	 * @param file damaged snapshot file
+	 * @return sentence telling where the file was moved, to be shown to the user
+	 */
+	private String setAside(File file) {
+		File corrupt = new File(file.getPath() + ".corrupt");
+		try {
+			Files.move(file.toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return "It was moved to " + corrupt.getAbsolutePath();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "It cannot be moved and will be overwritten: " + file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * returns description of problem met while loading snapshot or journal, and forgets it, so that it is shown once
+	 * @return description to be shown to the user, null if data was loaded without problems
+	 */
+	public synchronized String getLoadProblem() {
+		String problem = loadProblem;
+		loadProblem = null;
+		return problem;
+	}
+
+	/**
+	 * folds journal into snapshot file, so that the next start of the application reads snapshot only, and closes journal. Called when application exits.
+	 * HSQLDB database is shut down instead
+	 */
+	public void saveSnapshot() {
+		compactor.shutdown();
+		if(hsqldb != null) {
+			synchronized(this) {
+				hsqldb.close();
+			}
+			return;
+		}
+		fold();
+		if(journal != null) {
+			journal.close();
+		}
+	}
+
+	/**
+	 * starts folding journal into snapshot in background, if journal outgrew its limit
+	 */
+	private void journaled() {
+		if(journal.isFull()) {
+			compactLater();
+		}
+	}
+
+	/**
+	 * starts folding journal into snapshot in background, unless it is already being folded
+	 */
+	private void compactLater() {
+		if(compacting.compareAndSet(false, true)) {
+			try {
+				compactor.execute(() -> {
+					try {
+						fold();
+					} finally {
+						compacting.set(false);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				compacting.set(false);
+			}
+		}
+	}
+
+	/**
+	 * writes all events and contacts to new snapshot file and deletes journal files folded into it. Further changes go to the next journal file,
+	 * which is started together with taking view of events, so that no change is lost or recorded twice. Events are read from the view after
+	 * the lock is released, so that changes are not held up while snapshot is written. Events kept in database are not written, only name
+	 * of the database is. HSQLDB database holds all changes already, so only its log is written into its files
+	 */
+	private void fold() {
+		if(hsqldb != null) {
+			hsqldb.checkpoint();
+			return;
+		}
+		synchronized(compactLock) {
+			try {
+				long generation;
+				String database;
+				EventStorage.View events;
+				ArrayList<Contact> contacts;
+				synchronized(this) {
+					generation = journal == null ? 0 : journal.rotate();
+					database = eventy.getDatabase();
+					events = database == null ? eventy.view() : null;
+					contacts = new ArrayList<>(kontakty);
+				}
+				try(EventStorage.View view = events) {
+					Snapshot.write(snapshot, generation, database, contacts, view);
+				}
+				if(journal != null) {
+					journal.deleteBefore(generation);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * replaces storage of events, closing the previous one, and schedules alarms of events in the new storage
+	 * @param storage new storage of events
+	 */
+	private void replaceEvents(EventStorage storage) {
+		alarms.clear();
+		EventStorage replaced = eventy;
+		eventy = storage;
+		if(replaced != storage) {
+			replaced.close();
+		}
+		for(Event e : storage.withAlarm()) {
+			scheduleAlarm(e);
+		}
+	}
+
+	/**
+	 * replaces contacts and storage of events with imported ones. If data is kept in HSQLDB database, imported data is copied into it
+	 * and imported storage is closed
+	 * @param contacts imported contacts
+	 * @param events imported events
+	 */
+	private void replaceData(ArrayList<Contact> contacts, EventStorage events) {
+		if(hsqldb != null) {
+			hsqldb.replaceAll(contacts, events.all());
+			events.close();
+			events = hsqldb;
+		}
+		kontakty = contacts;
+		replaceEvents(events);
+	}
+
+	/**
+	 * creates empty storage of events kept in memory, inside or outside Java heap depending on program argument storage. With storage=hsqldb
+	 * it holds imported events until they are copied into the database
+	 * @return new storage of events
+	 */
+	private EventStorage newEventStorage() {
+		return eventsMapped ? new MappedEventStore() : new EventStore();
 	}
 	
 	/**
-	 * exports contacts and events to database of given name
+	 * leaves events in database of given name, loading only events with alarm to schedule their alarms. Events held before are to be added
+	 * to the database by insertEarlier, unless they are already kept in it. Changes of events are written to the database at once, so they are not recorded
+	 * @param baza name of database file holding events
+	 * @return view of events held before, null if they are kept in the same database
+	 */
+	private EventStorage.View openEventsInDatabase(String baza) {
+		EventStorage storage = new DatabaseEventStorage(baza, xPort);
+		EventStorage.View earlier = baza.equals(eventy.getDatabase()) ? null : eventy.view();
+		replaceEvents(storage);
+		changes.reset(null);
+		return earlier;
+	}
+
+	/**
+	 * exports contacts and events to database of given name. If data was last imported from or exported to the same database, only changes made
+	 * since then are written, otherwise both tables are rewritten. If events are kept in that database, only changed contacts are written.
+	 * Database is written through StorageEngine chosen by Transmiter, Access engine unless configured otherwise
 	 * @param baza database to export data to
 	 */
 	public void exportToDatabase(String baza) {
-        xPort.bdExportKontakty(kontakty, baza);
-        xPort.bdExportEventy(eventy, baza);
+		StorageEngine engine = xPort.openEngine(new File(baza), Transmiter.ACCESS);
+		try {
+			exportTo(engine, baza);
+		} finally {
+			engine.close();
+		}
+	}
+
+	/**
+	 * exports contacts and events through given engine, as described in exportToDatabase
+	 * @param engine opened engine writing database
+	 * @param baza database to export data to
+	 */
+	private void exportTo(StorageEngine engine, String baza) {
+		List<Contact> contacts = changes.areContactsChanged() ? kontakty : null;
+		if(baza.equals(eventy.getDatabase())) {
+			engine.applyChanges(StorageChanges.all(contacts, null));
+			changes.reset(null);
+			return;
+		}
+		if(changes.isSyncedWith(baza)) {
+			List<Event> inserted = new ArrayList<>();
+			for(int id : changes.getInserted()) {
+				Event e = eventy.get(id);
+				if(e != null) {
+					inserted.add(e);
+				}
+			}
+			Map<Event, Event> updated = new HashMap<>();
+			for(Map.Entry<Integer, Event> change : changes.getUpdated().entrySet()) {
+				Event e = eventy.get(change.getKey());
+				if(e != null) {
+					updated.put(change.getValue(), e);
+				}
+			}
+			if(!engine.applyChanges(StorageChanges.since(contacts, inserted, updated, changes.getDeleted().values()))) {
+				engine.applyChanges(StorageChanges.all(contacts, getEventy()));
+			}
+		} else {
+			engine.applyChanges(StorageChanges.all(kontakty, getEventy()));
+		}
+		changes.reset(eventy.getDatabase() == null ? baza : null);
+	}
+
+	/**
+	 * migrates given database file to the version of events table identifying rows by id column, as described in Transmiter.migrate. Events of the
+	 * old table are copied and the old table is left unchanged. Events are kept in database only in files already migrated, so events imported
+	 * from the file before stay in memory until it is imported again
+	 * @param baza name of database file to migrate
+	 */
+	public void migrateDatabase(String baza) {
+		xPort.migrate(baza);
 	}
 	
 	/**
-	 * imports events from given XML file
+	 * imports events from given XML file, replacing all events. Events are read one chunk at a time into a new store, which replaces the current one
+	 * only when whole import succeeds. Imported events are kept in memory, also when events were kept in database before, and are written to snapshot
+	 * at once instead of journal. With storage=hsqldb they are copied into HSQLDB database. File is read through StorageEngine chosen by Transmiter,
+	 * XML engine unless configured otherwise
 	 * @param file file to import events from
 	 */
 	public void importFromXML(File file) {
-		eventy = new ArrayList<>(xPort.xmlImport(file));
+		EventStorage imported = newEventStorage();
+		StorageEngine engine = xPort.openEngine(file, Transmiter.XML);
+		try {
+			engine.streamEvents(chunk -> {
+				for(Event e : chunk) {
+					if(e.getStart() != null && e.getEnd() != null) {
+						imported.add(e);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			imported.close();
+			throw e;
+		} finally {
+			engine.close();
+		}
+		synchronized(this) {
+			replaceData(kontakty, imported);
+			changes.reset(null);
+		}
+		fold();
 	}
 
 	/**
-	 * exports events to given XML file
+	 * exports events to given XML file, through StorageEngine chosen by Transmiter, XML engine unless configured otherwise
 	 * @param file file to export events to
 	 */
 	public void exportEventsToXml(File file) {
-		xPort.xmlExport(file, eventy);
+		StorageEngine engine = xPort.openEngine(file, Transmiter.XML);
+		try {
+			engine.applyChanges(StorageChanges.all(null, eventy.all()));
+		} finally {
+			engine.close();
+		}
 	}
 
 	/**
-	 * replaces one event with another on the events list
-	 * @param oldEvent event to remove from the list
-	 * @param newEvent event to add to the list
+	 * replaces one event with another in the event store. New event takes over identifier of the old one
+	 * @param oldEvent event to remove from the store
+	 * @param newEvent event to add to the store
 	 */
-	public void replaceEvent(Event oldEvent, Event newEvent) {
-		eventy.remove(oldEvent);
-		eventy.add(newEvent);
+	public synchronized void replaceEvent(Event oldEvent, Event newEvent) {
+		if(newEvent == null || newEvent.getStart() == null || newEvent.getEnd() == null) {
+			deleteEvent(oldEvent);
+		} else {
+			int id = oldEvent.getId();
+			Event original = journalsEvents() || changes.needsOriginal(id) ? eventy.get(id) : null;
+			if(eventy.replace(id, newEvent)) {
+				changes.eventUpdated(id, original);
+				scheduleAlarm(newEvent);
+				if(journalsEvents() && original != null) {
+					journal.eventReplaced(original, newEvent);
+					journaled();
+				}
+			} else {
+				addEvent(newEvent);
+			}
+		}
 	}
 }
@@ -0,0 +1,991 @@
+package system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * storage of events kept outside Java heap, in temporary files mapped into memory, meant for archives of millions of events. Every event is a fixed
+ * width record - identifier, flags, start, end and alarm time as numbers of seconds kept by EventStore, and offsets of title, note, place and contact
+ * in a heap of strings kept in second file, each string stored as its length followed by UTF-8 bytes. Files are mapped in segments of fixed size,
+ * added when the store grows.
+ * <p>
+ * Records of events starting in the same day are linked into a list, and only number of the first record of every day is kept in Java heap,
+ * so heap used depends on number of days, not on number of events. Events lasting longer than a week are linked into a separate list checked
+ * by every query. Identifier of event is number of its record plus one. Records of removed events are linked into a list of free records
+ * and reused by events added later, which then get the same identifiers.
+ * Recently written strings are remembered, so that titles and places repeated in consecutive events are stored once. Replaced event keeps strings
+ * which did not change. Strings no longer used are counted, and when they take more than half of strings file, which has also doubled since
+ * it was last compacted, strings of all events are copied into new file and the old one is dropped.
+ * <p>
+ * View of the store, written to Snapshot, is taken without copying anything. While it is open, record changed for the first time is copied
+ * into the view before the change, strings are not compacted, and the view reads remaining records in chunks, locking the store for one chunk at a time.
+ * <p>
+ * Files are opened with DELETE_ON_CLOSE, so the system deletes them when the store is closed or cleared and their mapped segments are released
+ * by garbage collector, even where mapped files cannot be deleted. Events are kept between runs of the application by Snapshot and Journal.
+ * @author Marta Bielecka
+ *
+ */
+class MappedEventStore implements EventStorage {
+
+	/**
+	 * size of one record in bytes
+	 */
+	private static final int RECORD = 72;
+	/**
+	 * number of records in one mapped segment
+	 */
+	private static final int RECORDS_PER_SEGMENT = 1 << 20;
+	/**
+	 * size of one mapped segment of strings file in bytes
+	 */
+	private static final int STRING_SEGMENT = 64 << 20;
+	/**
+	 * position of identifier in record
+	 */
+	private static final int ID = 0;
+	/**
+	 * position of flags in record
+	 */
+	private static final int FLAGS = 4;
+	/**
+	 * position of number of the next record in the same list, -1 for the last one
+	 */
+	private static final int NEXT = 8;
+	/**
+	 * position of start time in record
+	 */
+	private static final int START = 16;
+	/**
+	 * position of end time in record
+	 */
+	private static final int END = 24;
+	/**
+	 * position of alarm time in record, EventStore.NO_ALARM if alarm is not set
+	 */
+	private static final int ALARM = 32;
+	/**
+	 * position of offset of title in record
+	 */
+	private static final int TITLE = 40;
+	/**
+	 * position of offset of note in record
+	 */
+	private static final int NOTE = 48;
+	/**
+	 * position of offset of place in record
+	 */
+	private static final int PLACE = 56;
+	/**
+	 * position of offset of contact in record. Contact is stored as offsets of its name, company, e-mail and phone
+	 */
+	private static final int PERSON = 64;
+	/**
+	 * flag of record holding event, cleared when event is removed
+	 */
+	private static final int LIVE = 1;
+	/**
+	 * offset standing for null string or contact
+	 */
+	private static final long NONE = -1;
+	/**
+	 * no record, ends lists of records
+	 */
+	private static final int END_OF_LIST = -1;
+	/**
+	 * number of seconds in one day
+	 */
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+	/**
+	 * events lasting longer than this number of seconds are kept in list of long events instead of list of the day they start in
+	 */
+	private static final long LONG_EVENT = 7 * SECONDS_PER_DAY;
+	/**
+	 * number of recently written strings remembered with their offsets
+	 */
+	private static final int RECENT_STRINGS = 1024;
+	/**
+	 * size of contact in strings file, four offsets of its texts
+	 */
+	private static final int CONTACT_BYTES = 32;
+	/**
+	 * smallest size in bytes of strings file which is compacted, smaller files are left growing
+	 */
+	private static final long MIN_COMPACTION = 16 << 20;
+	/**
+	 * number of records read by view at once, while the store is locked
+	 */
+	private static final int VIEW_CHUNK = 4096;
+
+	/**
+	 * channel of records file
+	 */
+	private FileChannel recordChannel;
+	/**
+	 * channel of strings file
+	 */
+	private FileChannel stringChannel;
+	/**
+	 * mapped segments of records file
+	 */
+	private List<MappedByteBuffer> records = new ArrayList<>();
+	/**
+	 * mapped segments of strings file
+	 */
+	private List<MappedByteBuffer> strings = new ArrayList<>();
+	/**
+	 * number of used records, including free records
+	 */
+	private int count;
+	/**
+	 * number of events in the store
+	 */
+	private int size;
+	/**
+	 * number of the first free record, records are linked through their NEXT field
+	 */
+	private int freeRecords = END_OF_LIST;
+	/**
+	 * number of used bytes of strings file
+	 */
+	private long stringsEnd;
+	/**
+	 * number of bytes of strings and contacts no longer referred to by replaced and removed events. String shared by several events is counted
+	 * for each of them, so the number may be larger than the real one
+	 */
+	private long released;
+	/**
+	 * number of used bytes of strings file just after it was last compacted, 0 if it was not compacted yet
+	 */
+	private long compactedEnd;
+	/**
+	 * number of the first record of list of events starting in given day, keyed by number of day since 1970-01-01
+	 */
+	private final TreeMap<Long, Integer> days = new TreeMap<>();
+	/**
+	 * number of the first record of list of events longer than LONG_EVENT
+	 */
+	private int longEvents = END_OF_LIST;
+	/**
+	 * offsets of recently written strings, the least recently used are forgotten
+	 */
+	private final Map<String, Long> recentStrings = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			return size() > RECENT_STRINGS;
+		}
+	};
+	/**
+	 * open views of the store, keeping content of records changed after they were taken
+	 */
+	private final List<StoreView> views = new ArrayList<>();
+
+	/**
+	 * constructs empty store in new temporary files
+	 * @throws RuntimeException if files cannot be created
+	 */
+	MappedEventStore() {
+		recordChannel = openTemporary(".records");
+		stringChannel = openTemporary(".strings");
+	}
+
+	/**
+	 * events in the store are kept in temporary files only
+	 * @return null
+	 */
+	@Override
+	public String getDatabase() { return null; }
+
+	@Override
+	public synchronized int add(Event e) {
+		int id = add(EventStore.toSeconds(e.getStart()), EventStore.toSeconds(e.getEnd()),
+				e.hasNotification() ? EventStore.toSeconds(e.getNotification().getBefore()) : EventStore.NO_ALARM,
+				e.getTittle(), e.getNote(), e.getPlace(), e.getPerson());
+		e.setId(id);
+		return id;
+	}
+
+	@Override
+	public synchronized int add(long start, long end, long alarm, String title, String note, String place, Contact person) {
+		int row;
+		if (freeRecords != END_OF_LIST) {
+			row = freeRecords;
+			freeRecords = getInt(row, NEXT);
+			keepForViews(row);
+		} else {
+			row = count++;
+		}
+		size++;
+		ByteBuffer segment = recordSegment(row);
+		int position = position(row);
+		segment.putInt(position + ID, row + 1);
+		segment.putInt(position + FLAGS, LIVE);
+		write(row, start, end, alarm, title, note, place, person);
+		link(row);
+		return row + 1;
+	}
+
+	@Override
+	public synchronized boolean replace(int id, Event e) {
+		int row = id - 1;
+		if (!isLive(row)) {
+			return false;
+		}
+		keepForViews(row);
+		unlink(row);
+		long title = keepText(getLong(row, TITLE), e.getTittle());
+		long note = keepText(getLong(row, NOTE), e.getNote());
+		long place = keepText(getLong(row, PLACE), e.getPlace());
+		long person = keepContact(getLong(row, PERSON), e.getPerson());
+		ByteBuffer segment = recordSegment(row);
+		int position = position(row);
+		segment.putLong(position + START, EventStore.toSeconds(e.getStart()));
+		segment.putLong(position + END, EventStore.toSeconds(e.getEnd()));
+		segment.putLong(position + ALARM, e.hasNotification() ? EventStore.toSeconds(e.getNotification().getBefore()) : EventStore.NO_ALARM);
+		segment.putLong(position + TITLE, title);
+		segment.putLong(position + NOTE, note);
+		segment.putLong(position + PLACE, place);
+		segment.putLong(position + PERSON, person);
+		link(row);
+		e.setId(id);
+		compactIfWasteful();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(int id) {
+		int row = id - 1;
+		if (!isLive(row)) {
+			return false;
+		}
+		keepForViews(row);
+		unlink(row);
+		size--;
+		released += textSize(getLong(row, TITLE)) + textSize(getLong(row, NOTE)) + textSize(getLong(row, PLACE)) + contactSize(getLong(row, PERSON));
+		ByteBuffer segment = recordSegment(row);
+		int position = position(row);
+		segment.putInt(position + FLAGS, 0);
+		segment.putInt(position + NEXT, freeRecords);
+		freeRecords = row;
+		compactIfWasteful();
+		return true;
+	}
+
+	/**
+	 * removes all events from the store. Files are closed and replaced by new empty ones, so that their space is given back to the system.
+	 * Open views keep reading segments of the old files
+	 * @throws RuntimeException if new files cannot be created
+	 */
+	@Override
+	public synchronized void clear() {
+		FileChannel newRecords = openTemporary(".records");
+		FileChannel newStrings = openTemporary(".strings");
+		closeFiles();
+		recordChannel = newRecords;
+		stringChannel = newStrings;
+		count = 0;
+		size = 0;
+		freeRecords = END_OF_LIST;
+		stringsEnd = 0;
+		released = 0;
+		compactedEnd = 0;
+		days.clear();
+		longEvents = END_OF_LIST;
+		recentStrings.clear();
+	}
+
+	@Override
+	public synchronized Event get(int id) {
+		return isLive(id - 1) ? materialize(id - 1) : null;
+	}
+
+	@Override
+	public synchronized List<Event> all() {
+		return between(Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * returns events overlapping period [from, to), walking lists of days from a week before the period to its end and list of long events.
+	 * Days are walked in order and events of every day are sorted by start time, long events are merged in between
+	 * @param from beginning of the period in seconds, inclusive
+	 * @param to end of the period in seconds, exclusive
+	 * @return list of events ordered by start time
+	 */
+	@Override
+	public synchronized List<Event> between(long from, long to) {
+		List<Event> events = new ArrayList<>();
+		Integer[] longRows = Arrays.stream(overlapping(longEvents, from, to)).boxed().toArray(Integer[]::new);
+		Arrays.sort(longRows, (a, b) -> getLong(a, START) != getLong(b, START) ? Long.compare(getLong(a, START), getLong(b, START)) : a - b);
+		int nextLong = 0;
+		long firstDay = Math.floorDiv(from < Long.MIN_VALUE + LONG_EVENT ? Long.MIN_VALUE : from - LONG_EVENT, SECONDS_PER_DAY);
+		long lastDay = Math.floorDiv(to == Long.MIN_VALUE ? to : to - 1, SECONDS_PER_DAY);
+		if (firstDay <= lastDay) {
+			for (Map.Entry<Long, Integer> day : days.subMap(firstDay, true, lastDay, true).entrySet()) {
+				// start within the day takes less than 17 bits and number of record 31 bits, so both are sorted as one number
+				long dayStart = day.getKey() * SECONDS_PER_DAY;
+				int[] rows = overlapping(day.getValue(), from, to);
+				long[] keys = new long[rows.length];
+				for (int i = 0; i < rows.length; i++) {
+					keys[i] = (getLong(rows[i], START) - dayStart) << 32 | rows[i];
+				}
+				Arrays.sort(keys);
+				for (long key : keys) {
+					while (nextLong < longRows.length && getLong(longRows[nextLong], START) <= dayStart + (key >>> 32)) {
+						events.add(materialize(longRows[nextLong++]));
+					}
+					events.add(materialize((int) key));
+				}
+			}
+		}
+		while (nextLong < longRows.length) {
+			events.add(materialize(longRows[nextLong++]));
+		}
+		return events;
+	}
+
+	@Override
+	public synchronized List<Event> inDay(long epochDay) {
+		return between(epochDay * SECONDS_PER_DAY, (epochDay + 1) * SECONDS_PER_DAY);
+	}
+
+	/**
+	 * returns events of consecutive days mapped on days they take place in. Events of all days are found with one query
+	 * @param firstDay number of the first day since 1970-01-01
+	 * @param days number of days
+	 * @return map of number of day to list of events ordered by start time, days without events are not present in the map
+	 */
+	@Override
+	public synchronized Map<Long, List<Event>> acrossDays(long firstDay, int days) {
+		Map<Long, List<Event>> events = new HashMap<>();
+		for (Event e : between(firstDay * SECONDS_PER_DAY, (firstDay + days) * SECONDS_PER_DAY)) {
+			long start = EventStore.toSeconds(e.getStart());
+			long end = EventStore.toSeconds(e.getEnd());
+			long lastDay = Math.floorDiv(end > start ? end - 1 : end, SECONDS_PER_DAY);
+			for (long day = Math.max(firstDay, Math.floorDiv(start, SECONDS_PER_DAY)); day <= Math.min(firstDay + days - 1, lastDay); day++) {
+				events.computeIfAbsent(day, d -> new ArrayList<>()).add(e);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * returns identifiers of events ending before given time, scanning all records
+	 * @param time time in seconds
+	 * @return identifiers of found events
+	 */
+	@Override
+	public synchronized int[] endingBefore(long time) {
+		int[] found = new int[16];
+		int size = 0;
+		for (int row = 0; row < count; row++) {
+			if (isLive(row) && getLong(row, END) < time) {
+				if (size == found.length) {
+					found = Arrays.copyOf(found, size * 2);
+				}
+				found[size++] = row + 1;
+			}
+		}
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * returns events whose alarm is set, scanning all records
+	 * @return list of events with alarm
+	 */
+	@Override
+	public synchronized List<Event> withAlarm() {
+		List<Event> events = new ArrayList<>();
+		for (int row = 0; row < count; row++) {
+			if (isLive(row) && getLong(row, ALARM) != EventStore.NO_ALARM) {
+				events.add(materialize(row));
+			}
+		}
+		return events;
+	}
+
+	@Override
+	public synchronized void clearAlarm(int id) {
+		int row = id - 1;
+		if (isLive(row)) {
+			keepForViews(row);
+			recordSegment(row).putLong(position(row) + ALARM, EventStore.NO_ALARM);
+		}
+	}
+
+	/**
+	 * returns view of events, taken without reading any record
+	 * @return view of events, to be closed when it is no longer read
+	 */
+	@Override
+	public synchronized View view() {
+		StoreView view = new StoreView();
+		views.add(view);
+		return view;
+	}
+
+	/**
+	 * closes files of the store. Mapped segments are released by garbage collector, files are deleted by the system once the segments are released
+	 */
+	@Override
+	public synchronized void close() {
+		closeFiles();
+	}
+
+	/**
+	 * closes channels of both files and forgets their mapped segments. Open views keep their segments, which are not changed any more
+	 */
+	private void closeFiles() {
+		views.clear();
+		records = new ArrayList<>();
+		strings = new ArrayList<>();
+		try {
+			recordChannel.close();
+			stringChannel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * creates temporary file opened for reading and writing, deleted by the system when its channel is closed and no part of it is mapped,
+	 * or when application exits
+	 * @param suffix suffix of name of the file
+	 * @return channel of the file
+	 * @throws RuntimeException if file cannot be created
+	 */
+	private static FileChannel openTemporary(String suffix) {
+		try {
+			Path path = Files.createTempFile("organizer-events", suffix);
+			path.toFile().deleteOnExit();
+			return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * copies strings of all events into new strings file, if strings no longer used take more than half of the file and the file has at least
+	 * doubled since it was last compacted, so that compaction takes time proportional to bytes written since the previous one.
+	 * Strings are not compacted while a view is open
+	 */
+	private void compactIfWasteful() {
+		if (!views.isEmpty() || released <= stringsEnd / 2 || stringsEnd < 2 * Math.max(compactedEnd, MIN_COMPACTION)) {
+			return;
+		}
+		FileChannel newStrings = openTemporary(".strings");
+		FileChannel oldChannel = stringChannel;
+		List<MappedByteBuffer> oldStrings = strings;
+		stringChannel = newStrings;
+		strings = new ArrayList<>();
+		stringsEnd = 0;
+		recentStrings.clear();
+		for (int row = 0; row < count; row++) {
+			if (isLive(row)) {
+				ByteBuffer segment = recordSegment(row);
+				int position = position(row);
+				segment.putLong(position + TITLE, writeText(readText(oldStrings, segment.getLong(position + TITLE))));
+				segment.putLong(position + NOTE, writeText(readText(oldStrings, segment.getLong(position + NOTE))));
+				segment.putLong(position + PLACE, writeText(readText(oldStrings, segment.getLong(position + PLACE))));
+				segment.putLong(position + PERSON, writeContact(readContact(oldStrings, segment.getLong(position + PERSON))));
+			}
+		}
+		try {
+			oldChannel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		released = 0;
+		compactedEnd = stringsEnd;
+	}
+
+	/**
+	 * writes content of event into given record, except identifier and flags
+	 * @param row number of record
+	 * @param start start time in seconds
+	 * @param end end time in seconds
+	 * @param alarm alarm time in seconds, EventStore.NO_ALARM if alarm is not set
+	 * @param title title of event
+	 * @param note note of event
+	 * @param place place of event
+	 * @param person contact connected with event
+	 */
+	private void write(int row, long start, long end, long alarm, String title, String note, String place, Contact person) {
+		long titleOffset = writeText(title);
+		long noteOffset = writeText(note);
+		long placeOffset = writeText(place);
+		long personOffset = writeContact(person);
+		ByteBuffer segment = recordSegment(row);
+		int position = position(row);
+		segment.putLong(position + START, start);
+		segment.putLong(position + END, end);
+		segment.putLong(position + ALARM, alarm);
+		segment.putLong(position + TITLE, titleOffset);
+		segment.putLong(position + NOTE, noteOffset);
+		segment.putLong(position + PLACE, placeOffset);
+		segment.putLong(position + PERSON, personOffset);
+	}
+
+	/**
+	 * creates Event object from given record
+	 * @param row number of record
+	 * @return newly created event
+	 */
+	private Event materialize(int row) {
+		return materialize(recordSegment(row), position(row), strings);
+	}
+
+	/**
+	 * creates Event object from record kept in given buffer
+	 * @param record buffer holding the record
+	 * @param position position of the record in the buffer
+	 * @param segments mapped segments of strings file holding texts of the record
+	 * @return newly created event
+	 */
+	private static Event materialize(ByteBuffer record, int position, List<MappedByteBuffer> segments) {
+		long alarm = record.getLong(position + ALARM);
+		Event e = new Event(readText(segments, record.getLong(position + TITLE)), EventStore.toDateTime(record.getLong(position + START)),
+				EventStore.toDateTime(record.getLong(position + END)), readText(segments, record.getLong(position + NOTE)),
+				readText(segments, record.getLong(position + PLACE)), alarm == EventStore.NO_ALARM ? null : EventStore.toDateTime(alarm));
+		e.setPerson(readContact(segments, record.getLong(position + PERSON)));
+		e.setId(record.getInt(position + ID));
+		return e;
+	}
+
+	/**
+	 * copies record into every open view which has not read it yet, before the record is changed
+	 * @param row number of record
+	 */
+	private void keepForViews(int row) {
+		for (StoreView view : views) {
+			if (row >= view.next && row < view.count && !view.kept.containsKey(row)) {
+				ByteBuffer segment = recordSegment(row).duplicate();
+				segment.position(position(row));
+				segment.limit(position(row) + RECORD);
+				view.kept.put(row, ByteBuffer.allocate(RECORD).put(segment));
+			}
+		}
+	}
+
+	/**
+	 * finds records of list overlapping period [from, to)
+	 * @param first number of the first record of list
+	 * @param from beginning of the period in seconds, inclusive
+	 * @param to end of the period in seconds, exclusive
+	 * @return numbers of found records
+	 */
+	private int[] overlapping(int first, long from, long to) {
+		int[] found = new int[8];
+		int size = 0;
+		for (int row = first; row != END_OF_LIST; row = getInt(row, NEXT)) {
+			long start = getLong(row, START);
+			long end = getLong(row, END);
+			if (start < to && (end > from || (end == start && start >= from))) {
+				if (size == found.length) {
+					found = Arrays.copyOf(found, size * 2);
+				}
+				found[size++] = row;
+			}
+		}
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * tells if given record holds event
+	 * @param row number of record
+	 * @return true if record is used and its event was not removed
+	 */
+	private boolean isLive(int row) {
+		return row >= 0 && row < count && (getInt(row, FLAGS) & LIVE) != 0;
+	}
+
+	/**
+	 * adds record to list matching its start and length
+	 * @param row number of record
+	 */
+	private void link(int row) {
+		long start = getLong(row, START);
+		int next;
+		if (getLong(row, END) - start > LONG_EVENT) {
+			next = longEvents;
+			longEvents = row;
+		} else {
+			Integer first = days.put(Math.floorDiv(start, SECONDS_PER_DAY), row);
+			next = first == null ? END_OF_LIST : first;
+		}
+		recordSegment(row).putInt(position(row) + NEXT, next);
+	}
+
+	/**
+	 * removes record from its list, lists of single days are short, so the previous record is found by walking the list
+	 * @param row number of record
+	 */
+	private void unlink(int row) {
+		long start = getLong(row, START);
+		boolean isLong = getLong(row, END) - start > LONG_EVENT;
+		long day = Math.floorDiv(start, SECONDS_PER_DAY);
+		int next = getInt(row, NEXT);
+		int first = isLong ? longEvents : days.get(day);
+		if (first == row) {
+			if (isLong) {
+				longEvents = next;
+			} else if (next == END_OF_LIST) {
+				days.remove(day);
+			} else {
+				days.put(day, next);
+			}
+			return;
+		}
+		int previous = first;
+		while (getInt(previous, NEXT) != row) {
+			previous = getInt(previous, NEXT);
+		}
+		recordSegment(previous).putInt(position(previous) + NEXT, next);
+	}
+
+	/**
+	 * reads int value from record
+	 * @param row number of record
+	 * @param field position of value in record
+	 * @return read value
+	 */
+	private int getInt(int row, int field) {
+		return recordSegment(row).getInt(position(row) + field);
+	}
+
+	/**
+	 * reads long value from record
+	 * @param row number of record
+	 * @param field position of value in record
+	 * @return read value
+	 */
+	private long getLong(int row, int field) {
+		return recordSegment(row).getLong(position(row) + field);
+	}
+
+	/**
+	 * returns position of record in its segment
+	 * @param row number of record
+	 * @return position in bytes
+	 */
+	private static int position(int row) {
+		return (row % RECORDS_PER_SEGMENT) * RECORD;
+	}
+
+	/**
+	 * returns segment holding given record, mapping new segments if needed
+	 * @param row number of record
+	 * @return mapped segment
+	 */
+	private ByteBuffer recordSegment(int row) {
+		int index = row / RECORDS_PER_SEGMENT;
+		while (records.size() <= index) {
+			records.add(map(recordChannel, (long) records.size() * RECORDS_PER_SEGMENT * RECORD, RECORDS_PER_SEGMENT * RECORD));
+		}
+		return records.get(index);
+	}
+
+	/**
+	 * returns segment of strings file holding given offset, mapping new segments if needed
+	 * @param offset offset in strings file
+	 * @return mapped segment
+	 */
+	private ByteBuffer stringSegment(long offset) {
+		int index = (int) (offset / STRING_SEGMENT);
+		while (strings.size() <= index) {
+			strings.add(map(stringChannel, (long) strings.size() * STRING_SEGMENT, STRING_SEGMENT));
+		}
+		return strings.get(index);
+	}
+
+	/**
+	 * maps part of file into memory, file grows if needed
+	 * @param channel channel of the file
+	 * @param position beginning of mapped part
+	 * @param size size of mapped part
+	 * @return mapped part
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) {
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+		} catch (IOException ee) {
+			throw new RuntimeException(ee);
+		}
+	}
+
+	/**
+	 * reserves space in strings file, so that it does not cross border of segments
+	 * @param size number of bytes
+	 * @return offset of reserved space
+	 */
+	private long allocate(int size) {
+		if (size > STRING_SEGMENT) {
+			throw new IllegalArgumentException("text longer than " + STRING_SEGMENT + " bytes");
+		}
+		if (stringsEnd % STRING_SEGMENT + size > STRING_SEGMENT) {
+			stringsEnd += STRING_SEGMENT - stringsEnd % STRING_SEGMENT;
+		}
+		long offset = stringsEnd;
+		stringsEnd += size;
+		return offset;
+	}
+
+	/**
+	 * writes text to strings file, unless it was written recently
+	 * @param text text to write, may be null
+	 * @return offset of text, NONE for null
+	 */
+	private long writeText(String text) {
+		if (text == null) {
+			return NONE;
+		}
+		Long recent = recentStrings.get(text);
+		if (recent != null) {
+			return recent;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		long offset = allocate(4 + bytes.length);
+		ByteBuffer segment = stringSegment(offset).duplicate();
+		segment.position((int) (offset % STRING_SEGMENT));
+		segment.putInt(bytes.length);
+		segment.put(bytes);
+		recentStrings.put(text, offset);
+		return offset;
+	}
+
+	/**
+	 * reads text from strings file
+	 * @param offset offset of text
+	 * @return read text, null for NONE
+	 */
+	private String readText(long offset) {
+		return readText(strings, offset);
+	}
+
+	/**
+	 * reads text from given mapped segments of strings file
+	 * @param segments mapped segments holding the text
+	 * @param offset offset of text
+	 * @return read text, null for NONE
+	 */
+	private static String readText(List<MappedByteBuffer> segments, long offset) {
+		if (offset == NONE) {
+			return null;
+		}
+		ByteBuffer segment = segments.get((int) (offset / STRING_SEGMENT)).duplicate();
+		segment.position((int) (offset % STRING_SEGMENT));
+		byte[] bytes = new byte[segment.getInt()];
+		segment.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * returns text to be referred to by replaced event, the old one if it did not change and new one written to strings file otherwise
+	 * @param offset offset of old text, NONE for null
+	 * @param text new text, may be null
+	 * @return offset of text, NONE for null
+	 */
+	private long keepText(long offset, String text) {
+		if (text == null ? offset == NONE : text.equals(readText(offset))) {
+			return offset;
+		}
+		released += textSize(offset);
+		return writeText(text);
+	}
+
+	/**
+	 * returns size of text in strings file
+	 * @param offset offset of text
+	 * @return size in bytes, with its length, 0 for NONE
+	 */
+	private long textSize(long offset) {
+		return offset == NONE ? 0 : 4 + stringSegment(offset).getInt((int) (offset % STRING_SEGMENT));
+	}
+
+	/**
+	 * writes contact to strings file as offsets of its texts
+	 * @param c contact to write, may be null
+	 * @return offset of contact, NONE for null
+	 */
+	private long writeContact(Contact c) {
+		if (c == null) {
+			return NONE;
+		}
+		long name = writeText(c.getName());
+		long company = writeText(c.getCompany());
+		long email = writeText(c.getEmail());
+		long phone = writeText(c.getPhone());
+		long offset = allocate(CONTACT_BYTES);
+		ByteBuffer segment = stringSegment(offset);
+		int position = (int) (offset % STRING_SEGMENT);
+		segment.putLong(position, name);
+		segment.putLong(position + 8, company);
+		segment.putLong(position + 16, email);
+		segment.putLong(position + 24, phone);
+		return offset;
+	}
+
+	/**
+	 * reads contact written by writeContact
+	 * @param offset offset of contact
+	 * @return newly created contact, null for NONE
+	 */
+	private Contact readContact(long offset) {
+		return readContact(strings, offset);
+	}
+
+	/**
+	 * reads contact from given mapped segments of strings file
+	 * @param segments mapped segments holding the contact and its texts
+	 * @param offset offset of contact
+	 * @return newly created contact, null for NONE
+	 */
+	private static Contact readContact(List<MappedByteBuffer> segments, long offset) {
+		if (offset == NONE) {
+			return null;
+		}
+		ByteBuffer segment = segments.get((int) (offset / STRING_SEGMENT));
+		int position = (int) (offset % STRING_SEGMENT);
+		return new Contact(readText(segments, segment.getLong(position)), readText(segments, segment.getLong(position + 8)),
+				readText(segments, segment.getLong(position + 16)), readText(segments, segment.getLong(position + 24)));
+	}
+
+	/**
+	 * returns contact to be referred to by replaced event, the old one if none of its texts changed and new one written to strings file otherwise
+	 * @param offset offset of old contact, NONE for null
+	 * @param c new contact, may be null
+	 * @return offset of contact, NONE for null
+	 */
+	private long keepContact(long offset, Contact c) {
+		if (c == null ? offset == NONE : sameContact(readContact(offset), c)) {
+			return offset;
+		}
+		released += contactSize(offset);
+		return writeContact(c);
+	}
+
+	/**
+	 * tells if contacts have the same texts
+	 * @param a first contact, may be null
+	 * @param b second contact
+	 * @return true if all texts are equal
+	 */
+	private static boolean sameContact(Contact a, Contact b) {
+		return a != null && Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getCompany(), b.getCompany())
+				&& Objects.equals(a.getEmail(), b.getEmail()) && Objects.equals(a.getPhone(), b.getPhone());
+	}
+
+	/**
+	 * returns size of contact in strings file together with its texts
+	 * @param offset offset of contact
+	 * @return size in bytes, 0 for NONE
+	 */
+	private long contactSize(long offset) {
+		if (offset == NONE) {
+			return 0;
+		}
+		ByteBuffer segment = stringSegment(offset);
+		int position = (int) (offset % STRING_SEGMENT);
+		return CONTACT_BYTES + textSize(segment.getLong(position)) + textSize(segment.getLong(position + 8)) + textSize(segment.getLong(position + 16))
+				+ textSize(segment.getLong(position + 24));
+	}
+
+	/**
+	 * view of the store as it was when taken. It reads records up to the number used at that time, from its own list of mapped segments,
+	 * so that it is not affected when the store is cleared or closed. Record changed before the view read it is read from its copy
+	 */
+	private class StoreView implements View {
+		/**
+		 * number of records used when the view was taken
+		 */
+		private final int count;
+		/**
+		 * number of events when the view was taken
+		 */
+		private final int size;
+		/**
+		 * mapped segments of records file when the view was taken
+		 */
+		private final List<MappedByteBuffer> records;
+		/**
+		 * mapped segments of strings file when the view was taken
+		 */
+		private final List<MappedByteBuffer> strings;
+		/**
+		 * copies of records changed after the view was taken and not read yet, keyed by number of record
+		 */
+		private final Map<Integer, ByteBuffer> kept = new HashMap<>();
+		/**
+		 * number of the next record to read
+		 */
+		private int next;
+
+		/**
+		 * constructs view of current content of the store, called while the store is locked
+		 */
+		StoreView() {
+			count = MappedEventStore.this.count;
+			size = MappedEventStore.this.size;
+			records = new ArrayList<>(MappedEventStore.this.records);
+			strings = new ArrayList<>(MappedEventStore.this.strings);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void stream(Consumer<List<Event>> chunks) {
+			for (List<Event> chunk = nextChunk(); !chunk.isEmpty(); chunk = nextChunk()) {
+				chunks.accept(chunk);
+			}
+		}
+
+		/**
+		 * reads the next events, at most VIEW_CHUNK of them, while the store is locked
+		 * @return list of events, empty when all records were read
+		 */
+		private List<Event> nextChunk() {
+			synchronized (MappedEventStore.this) {
+				List<Event> chunk = new ArrayList<>();
+				for (; next < count && chunk.size() < VIEW_CHUNK; next++) {
+					ByteBuffer copy = kept.remove(next);
+					ByteBuffer record = copy != null ? copy : records.get(next / RECORDS_PER_SEGMENT);
+					int position = copy != null ? 0 : position(next);
+					if ((record.getInt(position + FLAGS) & LIVE) != 0) {
+						chunk.add(materialize(record, position, strings));
+					}
+				}
+				return chunk;
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (MappedEventStore.this) {
+				views.remove(this);
+				kept.clear();
+				next = count;
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * this class imports contacts and events through StorageEngine at the same time. Contacts are streamed on separate thread while events are streamed
+ * on the calling thread, engines may convert rows on more threads, like AccessEngine does. Results are available only after both were read,
+ * so Manager can take them over at once. Object is used for one import only.
+ * @author Marta Bielecka
+ *
+ */
+class ParallelImport {
+
+	/**
+	 * opened engine reading the file
+	 */
+	private final StorageEngine engine;
+	/**
+	 * imported contacts
+	 */
+	private final ArrayList<Contact> contacts = new ArrayList<>();
+	/**
+	 * imported events
+	 */
+	private final EventStorage events;
+
+	/**
+	 * constructs import reading data through given engine
+	 * @param engine opened engine reading the file
+	 * @param events empty storage to which imported events are added
+	 */
+	ParallelImport(StorageEngine engine, EventStorage events) {
+		this.engine = engine;
+		this.events = events;
+	}
+
+	/**
+	 * returns imported contacts, in order of rows in the file
+	 * @return list of contacts
+	 */
+	public ArrayList<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * returns imported events
+	 * @return storage holding events
+	 */
+	public EventStorage getEvents() {
+		return events;
+	}
+
+	/**
+	 * imports contacts and events, returning when both are read. Events without start or end time are skipped
+	 * @throws RuntimeException if contacts or events cannot be read, both readers are finished before it is thrown
+	 */
+	public void run() {
+		ExecutorService contactsReader = Executors.newSingleThreadExecutor(r -> new Thread(r, "import-contacts"));
+		try {
+			CompletableFuture<Void> contactsRead = CompletableFuture.runAsync(() -> engine.streamContacts(contacts::addAll), contactsReader);
+			RuntimeException failure = null;
+			try {
+				engine.streamEvents(chunk -> {
+					for (Event e : chunk) {
+						if (e.getStart() != null && e.getEnd() != null) {
+							events.add(e);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			try {
+				contactsRead.join();
+			} catch (CompletionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			contactsReader.shutdown();
+		}
+	}
+}
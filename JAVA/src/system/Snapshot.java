@@ -0,0 +1,628 @@
+package system;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * this class reads and writes binary snapshot of events and contacts, from which application starts instead of importing database or XML file.
+ * Snapshot file begins with magic number, version of format, generation of Journal files folded into it and name of database file keeping events,
+ * followed by:
+ * <ul>
+ * <li>contacts - number of contacts and for every contact its name, company, e-mail and phone</li>
+ * <li>events - number of events and for every event start, end and alarm time as numbers of seconds kept by EventStore, title, note and place,
+ * and flag telling if person follows, stored like a contact. Events kept in database are not written, only name of the database is, and they
+ * are read from the database again</li>
+ * <li>checksum - CRC32 of all preceding bytes, checked before anything else is read, so that damaged file is never taken for events</li>
+ * </ul>
+ * Every text is stored as -1 standing for null, -2 followed by its length in bytes and UTF-8 bytes, or index of the same text written recently.
+ * Writer and reader remember the last TEXTS short texts in the same way, so titles and places repeated in consecutive events take little space,
+ * while memory used on both sides does not depend on number of events.
+ * <p>
+ * Events are written from view of storage, one chunk at a time, so that they are never held all at once. File is read twice through a buffer
+ * of fixed size, first to check the checksum and then straight into given storage of events, without creating Event objects. Nothing is mapped,
+ * so the file can be replaced at once on every system. New snapshot is written to temporary file, forced to the disk and then atomically moved over the old one,
+ * so that snapshot is never left half written and is on the disk before Journal files folded into it are deleted.
+ * @author Marta Bielecka
+ *
+ */
+class Snapshot {
+
+	/**
+	 * number beginning every snapshot file
+	 */
+	private static final int MAGIC = 0x4F524753;
+	/**
+	 * version of format, files of other versions are not read
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * size in bytes of buffer through which file is read
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * size in bytes of checksum at the end of file
+	 */
+	private static final int CHECKSUM_BYTES = 8;
+	/**
+	 * stored in place of null text
+	 */
+	private static final int NO_TEXT = -1;
+	/**
+	 * stored before text which is not one of recently written texts
+	 */
+	private static final int NEW_TEXT = -2;
+	/**
+	 * number of recently written texts which can be referred to by index
+	 */
+	private static final int TEXTS = 4096;
+	/**
+	 * length in bytes of the longest text remembered as recently written, longer texts are always written whole
+	 */
+	private static final int SHORT_TEXT = 256;
+	/**
+	 * size in bytes of contact in file
+	 */
+	private static final int CONTACT_BYTES = 4 * 4;
+	/**
+	 * smallest size in bytes of event in file, without contact
+	 */
+	private static final int EVENT_BYTES = 3 * 8 + 3 * 4 + 1;
+	/**
+	 * earliest time which can be stored, as number of seconds
+	 */
+	private static final long EARLIEST = EventStore.toSeconds(LocalDateTime.MIN);
+	/**
+	 * latest time which can be stored, as number of seconds
+	 */
+	private static final long LATEST = EventStore.toSeconds(LocalDateTime.MAX);
+
+	/**
+	 * generation of the first Journal file not folded into snapshot
+	 */
+	private final long generation;
+	/**
+	 * name of database file keeping events, null if events are stored in snapshot
+	 */
+	private final String database;
+	/**
+	 * contacts read from snapshot
+	 */
+	private final ArrayList<Contact> contacts;
+	/**
+	 * events read from snapshot
+	 */
+	private final EventStorage events;
+
+	/**
+	 * constructs snapshot with given content
+	 * @param generation generation of the first Journal file not folded into snapshot
+	 * @param database name of database file keeping events, null if events are stored in snapshot
+	 * @param contacts contacts read from snapshot
+	 * @param events events read from snapshot
+	 */
+	private Snapshot(long generation, String database, ArrayList<Contact> contacts, EventStorage events) {
+		this.generation = generation;
+		this.database = database;
+		this.contacts = contacts;
+		this.events = events;
+	}
+
+	/**
+	 * returns generation of the first Journal file not folded into snapshot. Journal files of earlier generations are already contained in it
+	 * @return generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * returns name of database file keeping events, which are then not stored in snapshot
+	 * @return name of database file, null if events are stored in snapshot
+	 */
+	public String getDatabase() {
+		return database;
+	}
+
+	/**
+	 * returns contacts read from snapshot
+	 * @return list of contacts, in order they were written
+	 */
+	public ArrayList<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * returns events read from snapshot
+	 * @return storage holding events
+	 */
+	public EventStorage getEvents() {
+		return events;
+	}
+
+	/**
+	 * writes snapshot of given contacts and events and forces it to the disk
+	 * @param file file to write
+	 * @param generation generation of the first Journal file not folded into snapshot
+	 * @param database name of database file keeping events, null if events are stored in snapshot
+	 * @param contacts contacts to write
+	 * @param events view of events to write, null if they are kept in database
+	 * @throws IOException if file cannot be written
+	 */
+	static void write(File file, long generation, String database, List<Contact> contacts, EventStorage.View events) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		CRC32 checksum = new CRC32();
+		try (FileOutputStream stream = new FileOutputStream(temporary);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, checksum)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(generation);
+			if (database == null) {
+				out.writeInt(NO_TEXT);
+			} else {
+				byte[] bytes = database.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			Texts texts = new Texts();
+			out.writeInt(contacts.size());
+			for (Contact c : contacts) {
+				writeContact(out, c, texts);
+			}
+			if (events == null) {
+				out.writeInt(0);
+			} else {
+				writeEvents(out, events, texts);
+			}
+			out.flush();
+			out.writeLong(checksum.getValue());
+			out.flush();
+			stream.getFD().sync();
+		}
+		try {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		syncDirectory(file);
+	}
+
+	/**
+	 * writes number of events of view followed by the events, as they are streamed by the view
+	 * @param out output stream
+	 * @param events view of events to write
+	 * @param texts recently written texts
+	 * @throws IOException if stream cannot be written, or view streams other number of events than it tells
+	 */
+	private static void writeEvents(DataOutputStream out, EventStorage.View events, Texts texts) throws IOException {
+		int size = events.size();
+		int[] written = new int[1];
+		out.writeInt(size);
+		try {
+			events.stream(chunk -> {
+				try {
+					for (Event e : chunk) {
+						if (++written[0] > size) {
+							return;
+						}
+						out.writeLong(EventStore.toSeconds(e.getStart()));
+						out.writeLong(EventStore.toSeconds(e.getEnd()));
+						out.writeLong(e.hasNotification() ? EventStore.toSeconds(e.getNotification().getBefore()) : EventStore.NO_ALARM);
+						texts.write(out, e.getTittle());
+						texts.write(out, e.getNote());
+						texts.write(out, e.getPlace());
+						out.writeBoolean(e.getPerson() != null);
+						if (e.getPerson() != null) {
+							writeContact(out, e.getPerson(), texts);
+						}
+					}
+				} catch (IOException ee) {
+					throw new UncheckedIOException(ee);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (written[0] != size) {
+			throw new IOException("view of " + size + " events streamed " + written[0] + " events");
+		}
+	}
+
+	/**
+	 * forces to the disk directory entry of moved file, so that the move survives a crash. Does nothing on systems which do not allow
+	 * opening directories, like Windows, where the move is written at once
+	 * @param file moved file
+	 */
+	private static void syncDirectory(File file) {
+		File directory = file.getAbsoluteFile().getParentFile();
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// directory cannot be opened on this system
+		}
+	}
+
+	/**
+	 * reads snapshot from given file. Every number of items and length of text is checked against size of the file before anything is allocated,
+	 * so damaged file is reported by IOException and never by running out of memory
+	 * @param file file to read
+	 * @param events empty storage to which events are added, holding part of events if file is damaged
+	 * @return read snapshot
+	 * @throws IOException if file cannot be read, is not a snapshot, has unknown version or is damaged
+	 */
+	static Snapshot read(File file, EventStorage events) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long contentSize = Math.max(0, channel.size() - CHECKSUM_BYTES);
+			Input in = new Input(channel, file, contentSize);
+			if (in.remaining() < 8 || in.getInt() != MAGIC) {
+				throw new IOException(file + ": not a snapshot file");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + ": unknown version of snapshot " + version);
+			}
+			verify(channel, file, contentSize);
+			try {
+				long generation = in.getLong();
+				String database = null;
+				int length = in.getInt();
+				if (length != NO_TEXT) {
+					database = in.getText(in.check(length, 1));
+				}
+				Texts texts = new Texts();
+				int count = in.count(CONTACT_BYTES);
+				ArrayList<Contact> contacts = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					contacts.add(readContact(in, texts));
+				}
+				count = in.count(EVENT_BYTES);
+				for (int i = 0; i < count; i++) {
+					long start = time(in.getLong(), file);
+					long end = time(in.getLong(), file);
+					long alarm = in.getLong();
+					if (alarm != EventStore.NO_ALARM) {
+						time(alarm, file);
+					}
+					String title = texts.read(in);
+					String note = texts.read(in);
+					String place = texts.read(in);
+					events.add(start, end, alarm, title, note, place, in.get() != 0 ? readContact(in, texts) : null);
+				}
+				return new Snapshot(generation, database, contacts, events);
+			} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+				throw new IOException(file + ": snapshot file is damaged", e);
+			}
+		}
+	}
+
+	/**
+	 * checks checksum at the end of file against all preceding bytes
+	 * @param channel opened file
+	 * @param file read file, for the message
+	 * @param contentSize size of file without checksum
+	 * @throws IOException if file is too short or its checksum does not match its content
+	 */
+	private static void verify(FileChannel channel, File file, long contentSize) throws IOException {
+		if (channel.size() < contentSize + CHECKSUM_BYTES) {
+			throw new IOException(file + ": snapshot file is damaged, it has no checksum");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		CRC32 checksum = new CRC32();
+		for (long position = 0; position < contentSize; ) {
+			int length = (int) Math.min(BUFFER_SIZE, contentSize - position);
+			buffer.clear();
+			readFully(channel, buffer, position, length, file);
+			buffer.flip();
+			checksum.update(buffer);
+			position += length;
+		}
+		buffer.clear();
+		readFully(channel, buffer, contentSize, CHECKSUM_BYTES, file);
+		if (checksum.getValue() != buffer.getLong(0)) {
+			throw new IOException(file + ": snapshot file is damaged, checksum does not match");
+		}
+	}
+
+	/**
+	 * reads given number of bytes of file into buffer, after its position
+	 * @param channel opened file
+	 * @param buffer buffer with enough space remaining
+	 * @param position position in file of the first byte to read
+	 * @param length number of bytes to read
+	 * @param file read file, for the message
+	 * @throws IOException if file cannot be read or ends before the bytes
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length, File file) throws IOException {
+		int limit = buffer.limit();
+		buffer.limit(buffer.position() + length);
+		for (long next = position; buffer.hasRemaining(); ) {
+			int read = channel.read(buffer, next);
+			if (read < 0) {
+				throw new IOException(file + ": snapshot file is damaged, it ends too early");
+			}
+			next += read;
+		}
+		buffer.limit(limit);
+	}
+
+	/**
+	 * checks that read number of seconds is a valid time
+	 * @param seconds read number of seconds
+	 * @param file read file, for the message
+	 * @return the same number of seconds
+	 * @throws IOException if number is out of range of LocalDateTime
+	 */
+	private static long time(long seconds, File file) throws IOException {
+		if (seconds < EARLIEST || seconds > LATEST) {
+			throw new IOException(file + ": snapshot file is damaged, time out of range " + seconds);
+		}
+		return seconds;
+	}
+
+	/**
+	 * writes texts of contact
+	 * @param out output stream
+	 * @param c contact to write
+	 * @param texts recently written texts
+	 * @throws IOException if stream cannot be written
+	 */
+	private static void writeContact(DataOutputStream out, Contact c, Texts texts) throws IOException {
+		texts.write(out, c.getName());
+		texts.write(out, c.getCompany());
+		texts.write(out, c.getEmail());
+		texts.write(out, c.getPhone());
+	}
+
+	/**
+	 * reads contact written by writeContact
+	 * @param in read file
+	 * @param texts recently read texts
+	 * @return read contact
+	 * @throws IOException if file ends before the contact or is damaged
+	 */
+	private static Contact readContact(Input in, Texts texts) throws IOException {
+		return new Contact(texts.read(in), texts.read(in), texts.read(in), texts.read(in));
+	}
+
+	/**
+	 * texts recently written to or read from snapshot, the last TEXTS texts not longer than SHORT_TEXT bytes. Every such text takes the next
+	 * index in turn, replacing the text written TEXTS texts before, so writer and reader give the same index to the same text
+	 */
+	private static class Texts {
+		/**
+		 * remembered texts in order of indexes
+		 */
+		private final String[] texts = new String[TEXTS];
+		/**
+		 * indexes of remembered texts, used by writer only
+		 */
+		private final Map<String, Integer> indexes = new HashMap<>();
+		/**
+		 * index to be taken by the next remembered text
+		 */
+		private int next;
+
+		/**
+		 * writes text, as index if it was written recently
+		 * @param out output stream
+		 * @param text text to write, may be null
+		 * @throws IOException if stream cannot be written
+		 */
+		void write(DataOutputStream out, String text) throws IOException {
+			if (text == null) {
+				out.writeInt(NO_TEXT);
+				return;
+			}
+			Integer index = indexes.get(text);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(NEW_TEXT);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			if (bytes.length <= SHORT_TEXT) {
+				String replaced = remember(text);
+				if (replaced != null) {
+					indexes.remove(replaced);
+				}
+				indexes.put(text, next == 0 ? TEXTS - 1 : next - 1);
+			}
+		}
+
+		/**
+		 * reads text written by write
+		 * @param in read file
+		 * @return read text, null for NO_TEXT
+		 * @throws IOException if file ends before the text or refers to text which was not read
+		 */
+		String read(Input in) throws IOException {
+			int index = in.getInt();
+			if (index == NO_TEXT) {
+				return null;
+			}
+			if (index == NEW_TEXT) {
+				int length = in.count(1);
+				String text = in.getText(length);
+				if (length <= SHORT_TEXT) {
+					remember(text);
+				}
+				return text;
+			}
+			if (index < 0 || index >= TEXTS || texts[index] == null) {
+				throw new IOException(in.file + ": snapshot file is damaged, unknown text " + index);
+			}
+			return texts[index];
+		}
+
+		/**
+		 * remembers text under the next index
+		 * @param text text to remember
+		 * @return text remembered before under the same index, null if there was none
+		 */
+		private String remember(String text) {
+			String replaced = texts[next];
+			texts[next] = text;
+			next = (next + 1) % TEXTS;
+			return replaced;
+		}
+	}
+
+	/**
+	 * reader of snapshot file through buffer of fixed size, refilled from the channel when it runs out. Reader knows its position in the file,
+	 * so that numbers of items can be checked against the rest of file, and reports end of file by IOException
+	 */
+	private static class Input {
+		/**
+		 * opened file
+		 */
+		private final FileChannel channel;
+		/**
+		 * read file, for messages
+		 */
+		private final File file;
+		/**
+		 * size of file without checksum, bytes from this position on are not read
+		 */
+		private final long contentSize;
+		/**
+		 * bytes read from file and not consumed yet, between position and limit
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		/**
+		 * position in file of the next byte to consume
+		 */
+		private long position;
+
+		/**
+		 * constructs reader of given file, positioned at its beginning
+		 * @param channel opened file
+		 * @param file read file, for messages
+		 * @param contentSize size of file without checksum
+		 */
+		Input(FileChannel channel, File file, long contentSize) {
+			this.channel = channel;
+			this.file = file;
+			this.contentSize = contentSize;
+			buffer.limit(0);
+		}
+
+		/**
+		 * returns number of bytes left to read, checksum excluded
+		 * @return number of bytes
+		 */
+		long remaining() {
+			return contentSize - position;
+		}
+
+		/**
+		 * makes sure that buffer holds given number of bytes, reading them from the file if needed, and counts them as consumed
+		 * @param length number of bytes, not larger than BUFFER_SIZE
+		 * @throws IOException if the rest of file is shorter or cannot be read
+		 */
+		private void need(int length) throws IOException {
+			if (length > remaining()) {
+				throw new IOException(file + ": snapshot file is damaged, it ends too early");
+			}
+			if (buffer.remaining() < length) {
+				int kept = buffer.remaining();
+				buffer.compact();
+				readFully(channel, buffer, position + kept, (int) Math.min(buffer.remaining(), remaining() - kept), file);
+				buffer.flip();
+			}
+			position += length;
+		}
+
+		/**
+		 * reads one byte
+		 * @return read byte
+		 * @throws IOException if file ends
+		 */
+		byte get() throws IOException {
+			need(1);
+			return buffer.get();
+		}
+
+		/**
+		 * reads int
+		 * @return read number
+		 * @throws IOException if file ends
+		 */
+		int getInt() throws IOException {
+			need(4);
+			return buffer.getInt();
+		}
+
+		/**
+		 * reads long
+		 * @return read number
+		 * @throws IOException if file ends
+		 */
+		long getLong() throws IOException {
+			need(8);
+			return buffer.getLong();
+		}
+
+		/**
+		 * reads text of given length, which may be longer than the buffer
+		 * @param length length of text in bytes of UTF-8
+		 * @return read text
+		 * @throws IOException if file ends
+		 */
+		String getText(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			for (int offset = 0; offset < length; ) {
+				int part = Math.min(length - offset, BUFFER_SIZE);
+				need(part);
+				buffer.get(bytes, offset, part);
+				offset += part;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * reads number of items or length of text and checks that the rest of file can hold it
+		 * @param size smallest size in bytes of one item
+		 * @return read number
+		 * @throws IOException if number is negative or larger than the rest of file can hold
+		 */
+		int count(int size) throws IOException {
+			return check(getInt(), size);
+		}
+
+		/**
+		 * checks that the rest of file can hold given number of items
+		 * @param count number of items
+		 * @param size smallest size in bytes of one item
+		 * @return the same number
+		 * @throws IOException if number is negative or larger than the rest of file can hold
+		 */
+		int check(int count, int size) throws IOException {
+			if (count < 0 || count > remaining() / size) {
+				throw new IOException(file + ": snapshot file is damaged, " + count + " items do not fit in " + remaining() + " bytes");
+			}
+			return count;
+		}
+	}
+}
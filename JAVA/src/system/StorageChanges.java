@@ -0,0 +1,125 @@
+package system;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * changes of events and contacts written by StorageEngine. Either all events are written, replacing those in the file, or only events inserted, updated
+ * and deleted since the file was last synchronized. Contacts are always written all together, or not at all.
+ * @author Marta Bielecka
+ *
+ */
+public class StorageChanges {
+
+	/**
+	 * all contacts replacing those in the file, null if contacts are not changed
+	 */
+	private final List<Contact> contacts;
+	/**
+	 * all events replacing those in the file, null if only changes of events are written
+	 */
+	private final List<Event> events;
+	/**
+	 * events added since last synchronization
+	 */
+	private final List<Event> inserted;
+	/**
+	 * events changed since last synchronization, content in the file mapped on current content
+	 */
+	private final Map<Event, Event> updated;
+	/**
+	 * content in the file of events deleted since last synchronization
+	 */
+	private final Collection<Event> deleted;
+
+	/**
+	 * constructs changes with given content
+	 * @param contacts all contacts, null if not changed
+	 * @param events all events, null if only changes are written
+	 * @param inserted added events
+	 * @param updated changed events
+	 * @param deleted deleted events
+	 */
+	private StorageChanges(List<Contact> contacts, List<Event> events, List<Event> inserted, Map<Event, Event> updated, Collection<Event> deleted) {
+		this.contacts = contacts;
+		this.events = events;
+		this.inserted = inserted;
+		this.updated = updated;
+		this.deleted = deleted;
+	}
+
+	/**
+	 * creates changes replacing all contacts and events in the file
+	 * @param contacts all contacts, null to leave contacts in the file unchanged
+	 * @param events all events, null to leave events in the file unchanged
+	 * @return created changes
+	 */
+	public static StorageChanges all(List<Contact> contacts, List<Event> events) {
+		return new StorageChanges(contacts, events, Collections.emptyList(), Collections.emptyMap(), Collections.emptyList());
+	}
+
+	/**
+	 * creates changes of events made since the file was last synchronized
+	 * @param contacts all contacts, null to leave contacts in the file unchanged
+	 * @param inserted events added since last synchronization
+	 * @param updated events changed since last synchronization, content in the file mapped on current content
+	 * @param deleted content in the file of events deleted since last synchronization
+	 * @return created changes
+	 */
+	public static StorageChanges since(List<Contact> contacts, List<Event> inserted, Map<Event, Event> updated, Collection<Event> deleted) {
+		return new StorageChanges(contacts, null, inserted, updated, deleted);
+	}
+
+	/**
+	 * returns all contacts replacing those in the file
+	 * @return list of contacts, null if contacts are not changed
+	 */
+	public List<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * returns all events replacing those in the file
+	 * @return list of events, null if only changes of events are written
+	 */
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	/**
+	 * tells if only changes of events are written
+	 * @return true if events are inserted, updated and deleted one by one, false if all events are replaced or left unchanged
+	 */
+	public boolean isIncremental() {
+		return events == null && !(inserted.isEmpty() && updated.isEmpty() && deleted.isEmpty());
+	}
+
+	/**
+	 * returns events added since last synchronization
+	 * @return list of events
+	 */
+	public List<Event> getInserted() {
+		return inserted;
+	}
+
+	/**
+	 * returns events changed since last synchronization
+	 * @return content in the file mapped on current content
+	 */
+	public Map<Event, Event> getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * returns events deleted since last synchronization
+	 * @return content in the file of deleted events
+	 */
+	public Collection<Event> getDeleted() {
+		return deleted;
+	}
+}
@@ -0,0 +1,55 @@
+package system;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * engine reading and writing events and contacts in files of one format, used by Manager for import and export. Engines are chosen by Transmiter
+ * from extension of the file or from program argument engine.extension=name, so that formats can be added, and compared with the same operations,
+ * without changing Manager. AccessEngine keeps data in Access database, XmlEngine keeps events in XML file. Engine object is used for one file,
+ * opened once and closed once.
+ * @author Marta Bielecka
+ *
+ */
+public interface StorageEngine {
+
+	/**
+	 * opens given file, preparing it for reading and writing
+	 * @param file file holding data
+	 * @throws RuntimeException if file cannot be opened
+	 */
+	void open(File file);
+
+	/**
+	 * reads events from the file and passes them to consumer in chunks, without holding all of them at once. Consumer is called by one thread at a time
+	 * @param chunks consumer receiving consecutive chunks of events
+	 * @throws RuntimeException if events cannot be read
+	 */
+	void streamEvents(Consumer<List<Event>> chunks);
+
+	/**
+	 * reads contacts from the file and passes them to consumer in chunks, in order they are kept in the file. Formats without contacts pass nothing.
+	 * May run at the same time as streamEvents
+	 * @param chunks consumer receiving consecutive chunks of contacts
+	 * @throws RuntimeException if contacts cannot be read
+	 */
+	void streamContacts(Consumer<List<Contact>> chunks);
+
+	/**
+	 * writes given changes to the file, all or none of them
+	 * @param changes changes to write
+	 * @return true if changes were written, false if engine cannot write changes of events one by one or the file does not match content
+	 * recorded in changes, then all events have to be written instead
+	 * @throws RuntimeException if file cannot be written
+	 */
+	boolean applyChanges(StorageChanges changes);
+
+	/**
+	 * closes the file. Engine cannot be used afterwards
+	 */
+	void close();
+}
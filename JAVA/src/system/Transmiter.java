@@ -1,38 +1,177 @@
 package system;
 
-import java.beans.Encoder;
-import java.beans.Expression;
-import java.beans.PersistenceDelegate;
-import java.beans.XMLDecoder;
-import java.beans.XMLEncoder;
 import java.io.*;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import dane.AppParameters;
 import dane.Event;
 import dane.Alarm;
 import dane.Contact;
 
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+
 /**
  * class is responsible for import/export from/to database or XML. It opens streams, handles them and closes. Formats data to be send and recieved ones. 
+ * Connections to database files are taken from DatabaseSession and stay opened between imports and exports. Manager reads and writes files
+ * through StorageEngine chosen by openEngine, engines of Access databases and XML files are registered at construction.
  * @author Marta Bielecka
  *
  */
 public class Transmiter {
 
 	/**
-	 * pattern for dates formatting
+	 * default number of rows sent to database in one batch during export
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 500;
+	/**
+	 * logger of transferred data, rows are logged one by one only on level FINEST
+	 */
+	private static final Logger log = Logger.getLogger(Transmiter.class.getName());
+	/**
+	 * columns of events table in order of parameters set by setEventColumns method
+	 */
+	private static final String EVENT_COLUMNS = "(tittle, start, end, note, place, sound, before)";
+	/**
+	 * columns of events table in order read by readEvent method
+	 */
+	static final String EVENT_SELECT = "SELECT tittle, start, end, note, place, before FROM ";
+	/**
+	 * columns of contacts table in order read by toContact method
+	 */
+	static final String CONTACT_SELECT = "SELECT name, company, email, phone FROM ";
+	/**
+	 * name of engine of Access database files
+	 */
+	public static final String ACCESS = "access";
+	/**
+	 * name of engine of XML files
 	 */
-    private static DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("YYYY-MM-dd'T'HH:mm");
+	public static final String XML = "xml";
+
+	/**
+	 * number of rows sent to database in one batch during export and passed on in one chunk during import, taken from program argument batch
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	/**
+	 * version of events table schema of every database file used so far, keyed by absolute path of the file
+	 */
+	private final Map<String, EventSchema> schemas = new HashMap<>();
+	/**
+	 * listener informed about rows transferred by import and export, does nothing by default
+	 */
+	private volatile IntConsumer progress = rows -> {};
+	/**
+	 * factories of storage engines, keyed by name of engine
+	 */
+	private final Map<String, Supplier<StorageEngine>> engines = new HashMap<>();
+	/**
+	 * names of storage engines keyed by extensions of files they handle, in lower case
+	 */
+	private final Map<String, String> extensions = new HashMap<>();
+
+	/**
+	 * constructs Transmiter with engines of Access databases and XML files, and with batch size taken from program argument batch
+	 */
+	public Transmiter() {
+		setBatchSize((int) Math.max(1, Math.min(Integer.MAX_VALUE, AppParameters.getNumberOption("batch", DEFAULT_BATCH_SIZE))));
+		registerEngine(ACCESS, () -> new AccessEngine(this), "mdb", "accdb");
+		registerEngine(XML, () -> new XmlEngine(this), "xml");
+	}
+
+	/**
+	 * registers storage engine, replacing engine of the same name
+	 * @param name name of engine, used in program argument engine.extension=name
+	 * @param factory factory creating new, not opened engine
+	 * @param fileExtensions extensions of files handled by the engine, without dot
+	 */
+	public void registerEngine(String name, Supplier<StorageEngine> factory, String... fileExtensions) {
+		engines.put(name, factory);
+		for (String extension : fileExtensions) {
+			extensions.put(extension.toLowerCase(), name);
+		}
+	}
+
+	/**
+	 * creates and opens storage engine for given file. Engine is chosen by program argument engine.extension=name for extension of the file,
+	 * otherwise by engine registered for the extension, otherwise given default engine is used
+	 * @param file file to open
+	 * @param defaultEngine name of engine used for files of unknown extension
+	 * @return opened engine
+	 * @throws IllegalArgumentException if chosen engine is not registered
+	 * @throws RuntimeException if file cannot be opened
+	 */
+	public StorageEngine openEngine(File file, String defaultEngine) {
+		String name = file.getName();
+		String extension = name.lastIndexOf('.') < 0 ? "" : name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+		String engine = AppParameters.getOption("engine." + extension, extensions.getOrDefault(extension, defaultEngine));
+		Supplier<StorageEngine> factory = engines.get(engine);
+		if (factory == null) {
+			throw new IllegalArgumentException("unknown storage engine " + engine + " for file " + file);
+		}
+		StorageEngine opened = factory.get();
+		opened.open(file);
+		return opened;
+	}
+
+	/**
+	 * returns number of rows sent to database in one batch during export
+	 * @return number of rows in one batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * changes number of rows sent to database in one batch during export
+	 * @param batchSize new number of rows in one batch, at least 1
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * sets listener informed about progress of import and export. Listener receives number of rows transferred since its previous call, after every
+	 * chunk or batch of rows, on the thread performing the transfer. Listener may stop the transfer by throwing an exception, export is then rolled back
+	 * @param listener listener of progress, null to remove it
+	 */
+	public void setProgressListener(IntConsumer listener) {
+		this.progress = listener != null ? listener : rows -> {};
+	}
+
+	/**
+	 * chooses if copy of database loaded by UCanAccess is kept on disk next to database file and reused when the file has not changed,
+	 * instead of being built again every time database is opened. Applies to databases opened later, can also be set by program argument mirror=disk
+	 * @param persistentMirror true to keep the copy on disk
+	 */
+	public void setPersistentMirror(boolean persistentMirror) {
+		DatabaseSession.getInstance().setPersistentMirror(persistentMirror);
+	}
 
 	/**
 	 * imports contacts from database in given file
@@ -41,58 +180,65 @@ public class Transmiter {
 	 */
 	public ArrayList<Contact> bdImportKontakty(String baza) {
 		ArrayList<Contact> contacts = new ArrayList<>();
-		try (Connection conn = DriverManager.getConnection("jdbc:ucanaccess://" + baza)){
-			Statement s = conn.createStatement();
-			ResultSet rs = s.executeQuery("SELECT * FROM Kontakty");
+		bdImportKontakty(baza, contacts::addAll);
+		return contacts;
+	}
 
-			String ret;
-			int id = 0;
-			while (rs.next()) {
-				Contact temp = new Contact(rs.getString("name"));
-				ret = id + ". " + rs.getString("name") + " ";
-				if (rs.getString("company") != null) {
-					temp.setCompany(rs.getString("company"));
-					ret += rs.getString("company") + " ";
-				}
-				if (rs.getString("email") != null) {
-					temp.setEmail(rs.getString("email"));
-					ret += rs.getString("email") + " ";
-				}
-				if (rs.getString("phone") != null) {
-					temp.setPhone(rs.getString("phone"));
-					ret += rs.getString("phone") + " ";
-				}
-				contacts.add(temp);
-				System.out.println(ret);
-				id++;
+	/**
+	 * reads contacts from database in given file and passes them to consumer in chunks of batch size, without holding all of them at once
+	 * @param baza name of a file with database
+	 * @param chunks consumer receiving consecutive chunks of contacts
+	 */
+	public void bdImportKontakty(String baza, Consumer<List<Contact>> chunks) {
+		bdReadRows(baza, "Kontakty", CONTACT_SELECT + "Kontakty", rows -> {
+			List<Contact> chunk = new ArrayList<>(rows.size());
+			for (Object[] row : rows) {
+				chunk.add(toContact(row));
 			}
-			return contacts;
-		} catch (Exception ee) {
-            throw new RuntimeException(ee);
-		}
+			chunks.accept(chunk);
+		});
 	}
 
 	/**
-	 * exports given list of contacts to database.
+	 * exports given list of contacts to database. Rows are sent in batches within one transaction, which is rolled back if export fails
 	 * @param kontakty list of contacts to be exported 
 	 * @param baza name of a file with database
 	 */
-	public void bdExportKontakty(ArrayList<Contact> kontakty, String baza) {
-		try (Connection conn = DriverManager.getConnection("jdbc:ucanaccess://" + baza)){
+	public void bdExportKontakty(List<Contact> kontakty, String baza) {
+		bdApplyChanges(StorageChanges.all(kontakty, null), baza);
+	}
 
-			conn.createStatement().executeUpdate("DELETE FROM Kontakty");
+	/**
+	 * replaces contacts in database by given list, without committing, so that caller decides about the transaction
+	 * @param conn connection to database, with auto-commit turned off
+	 * @param kontakty list of contacts to be exported
+	 * @throws SQLException if contacts cannot be written
+	 */
+	private void writeKontakty(Connection conn, List<Contact> kontakty) throws SQLException {
+		long startTime = System.nanoTime();
+		try (Statement s = conn.createStatement();
+				PreparedStatement ps = conn.prepareStatement("INSERT INTO Kontakty VALUES (?, ?, ?, ?)")) {
+			s.executeUpdate("DELETE FROM Kontakty");
 
-			PreparedStatement ps = conn.prepareStatement("INSERT INTO Kontakty VALUES (?, ?, ?, ?)");
+			int pending = 0;
 			for (Contact contact : kontakty) {
 				ps.setString(1, contact.getName());
 				ps.setString(2, contact.getCompany());
 				ps.setString(3, contact.getEmail());
 				ps.setString(4, contact.getPhone());
-				ps.executeUpdate();
+				ps.addBatch();
+				if (++pending == batchSize) {
+					ps.executeBatch();
+					progress.accept(pending);
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				ps.executeBatch();
+				progress.accept(pending);
 			}
-		} catch (Exception ee) {
-            throw new RuntimeException(ee);
 		}
+		reportRate("Kontakty", "exported", kontakty.size(), startTime);
 	}
 
 	/**
@@ -102,109 +248,458 @@ public class Transmiter {
 	 */
 	public ArrayList<Event> bdImportEventy(String baza) {
 		ArrayList<Event> eventy = new ArrayList<>();
-		try (Connection conn = DriverManager.getConnection("jdbc:ucanaccess://" + baza)){
-			Statement s = conn.createStatement();
-			ResultSet rs = s.executeQuery("SELECT * FROM Wydarzenia");
+		bdImportEventy(baza, eventy::addAll);
+		return eventy;
+	}
 
-			String ret;
-			int id = 0;
-			while (rs.next()) {
+	/**
+	 * reads events from database in given file and passes them to consumer in chunks of batch size, without holding all of them at once
+	 * @param baza name of a file with database
+	 * @param chunks consumer receiving consecutive chunks of events
+	 */
+	public void bdImportEventy(String baza, Consumer<List<Event>> chunks) {
+		EventSchema schema = schema(baza);
+		bdReadRows(baza, schema.table, EVENT_SELECT + schema.table, rows -> {
+			List<Event> chunk = new ArrayList<>(rows.size());
+			for (Object[] row : rows) {
+				chunk.add(toEvent(row, schema));
+			}
+			chunks.accept(chunk);
+		});
+	}
 
-				LocalDateTime start = LocalDateTime.parse(rs.getString("start"));
-				LocalDateTime end = LocalDateTime.parse(rs.getString("end"));
+	/**
+	 * reads rows returned by given query and passes values of their columns to consumer in chunks of batch size, without holding all of them at once.
+	 * Every column is read once per row and no value is converted, so that chunks can be converted to objects on other threads. Progress listener
+	 * is informed on the calling thread after every chunk
+	 * @param baza name of a file with database
+	 * @param table name of table read by the query, used in log
+	 * @param sql query to run
+	 * @param chunks consumer receiving consecutive chunks of rows, every row as table of values of columns
+	 */
+	void bdReadRows(String baza, String table, String sql, Consumer<List<Object[]>> chunks) {
+		try (Statement s = DatabaseSession.getInstance().getConnection(baza).createStatement()){
+			long startTime = System.nanoTime();
+			s.setFetchSize(batchSize);
+			ResultSet rs = s.executeQuery(sql);
+			int columns = rs.getMetaData().getColumnCount();
 
-				Event temp = new Event(rs.getString("tittle"), start, end);
-				ret = id + ". " + rs.getString("tittle") + " S-" + start.toString() + " E-" + end.toString() + " ";
-				if (!rs.getString("note").equals("")) {
-					
-					temp.setNote(rs.getString("note"));
-					ret += rs.getString("note") + " ";
-				}
-				if (!rs.getString("place").equals("")) {
-					temp.setPlace(rs.getString("place"));
-					ret += rs.getString("place") + " ";
+			List<Object[]> chunk = new ArrayList<>(batchSize);
+			int rows = 0;
+			while (rs.next()) {
+				Object[] row = new Object[columns];
+				for (int i = 0; i < columns; i++) {
+					row[i] = rs.getObject(i + 1);
 				}
-				if (!rs.getString("before").equals("")) { //rs.getString("before") != ""
-					LocalDateTime t = LocalDateTime.parse(rs.getString("before"));
-					String snd = rs.getString("sound");
-					if(snd.equals("")) {
-						snd = AppParameters.getInstance().getSound();
-					}
-					temp.setNotification(t);
+				rows++;
+				chunk.add(row);
+				if (chunk.size() == batchSize) {
+					chunks.accept(chunk);
+					progress.accept(chunk.size());
+					chunk = new ArrayList<>(batchSize);
 				}
-
-				eventy.add(temp);
-				System.out.println(ret);
-				id++;
 			}
-			return eventy;
+			if (!chunk.isEmpty()) {
+				chunks.accept(chunk);
+				progress.accept(chunk.size());
+			}
+			reportRate(table, "imported", rows, startTime);
 		} catch (Exception ee) {
             throw new RuntimeException(ee);
 		}
 	}
 
 	/**
-	 * exports list of events to database
+	 * exports list of events to database. Rows are sent in batches within one transaction, which is rolled back if export fails
 	 * @param eventy list of events to be exported to database
 	 * @param baza name of a file with database
 	 */
-	public void bdExportEventy(ArrayList<Event> eventy, String baza) {
-		try (Connection conn = DriverManager.getConnection("jdbc:ucanaccess://" + baza)){
+	public void bdExportEventy(List<Event> eventy, String baza) {
+		bdApplyChanges(StorageChanges.all(null, eventy), baza);
+	}
+
+	/**
+	 * writes to database only changes of events made since the database was last synchronized. Rows of changed and deleted events are found by content
+	 * they had in the database. All statements are executed in one transaction, which is rolled back if any row is not found exactly once
+	 * @param inserted events added since last synchronization
+	 * @param updated events changed since last synchronization, content in the database mapped on current content
+	 * @param deleted content in the database of events deleted since last synchronization
+	 * @param baza name of a file with database
+	 * @return true if changes were written, false if database does not match recorded content and whole table has to be exported
+	 */
+	public boolean bdExportEventyChanges(List<Event> inserted, Map<Event, Event> updated, Collection<Event> deleted, String baza) {
+		return bdApplyChanges(StorageChanges.since(null, inserted, updated, deleted), baza);
+	}
+
+	/**
+	 * writes changes of events and contacts to database in one transaction, so that either all of them are written or none. Events are written
+	 * before contacts, whole table or only changes made since last synchronization, whichever changes hold. Lock of the database file is held
+	 * during the transaction, so that events kept in the file by DatabaseEventStorage are not changed within it
+	 * @param changes changes to write, contacts or events may be left out
+	 * @param baza name of a file with database
+	 * @return true if changes were written, false if database does not match content recorded in changes and nothing was written
+	 */
+	public boolean bdApplyChanges(StorageChanges changes, String baza) {
+		EventSchema schema = schema(baza);
+		synchronized (DatabaseSession.getInstance().lock(baza)) {
+			try {
+				Connection conn = DatabaseSession.getInstance().getConnection(baza);
+				conn.setAutoCommit(false);
+				try {
+					if (changes.getEvents() != null) {
+						writeEventy(conn, changes.getEvents(), schema);
+					} else if (changes.isIncremental() && !writeEventyChanges(conn, changes.getInserted(), changes.getUpdated(), changes.getDeleted(), schema)) {
+						conn.rollback();
+						return false;
+					}
+					if (changes.getContacts() != null) {
+						writeKontakty(conn, changes.getContacts());
+					}
+					conn.commit();
+					return true;
+				} catch (Exception e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(true);
+				}
+			} catch (Exception ee) {
+	            throw new RuntimeException(ee);
+			}
+		}
+	}
 
-			conn.createStatement().executeUpdate("DELETE FROM Wydarzenia");
+	/**
+	 * replaces events in database by given list, without committing, so that caller decides about the transaction
+	 * @param conn connection to database, with auto-commit turned off
+	 * @param eventy list of events to be exported
+	 * @param schema version of events table
+	 * @throws SQLException if events cannot be written
+	 */
+	private void writeEventy(Connection conn, List<Event> eventy, EventSchema schema) throws SQLException {
+		long startTime = System.nanoTime();
+		try (Statement s = conn.createStatement();
+				PreparedStatement ps = conn.prepareStatement("INSERT INTO " + schema.table + " " + EVENT_COLUMNS +
+						" VALUES (?, ?, ?, ?, ?, ?, ?);")) {
+			s.executeUpdate("DELETE FROM " + schema.table);
 
-			PreparedStatement ps = conn.prepareStatement("INSERT INTO Wydarzenia " +
-					"(tittle, start, end, note, place, sound, before) VALUES (?, ?, ?, ?, ?, ?, ?);");
+			int pending = 0;
 			for (Event event : eventy) {
-				ps.setString(1, event.getTittle());
-				ps.setString(2, event.getStart().format(dateFormat));
-				ps.setString(3, event.getEnd().format(dateFormat));
-				ps.setString(4, event.getNote());
-				ps.setString(5, event.getPlace());
-
-				if (event.getNotification() != null) {
-					ps.setString(6, event.getNotification().getSound());
-					ps.setString(7, event.getNotification().getBefore().format(dateFormat));
-				} else {
-					ps.setString(6, "");
-					ps.setString(7, "");
+				setEventColumns(ps, event, schema);
+				ps.addBatch();
+				if (++pending == batchSize) {
+					ps.executeBatch();
+					progress.accept(pending);
+					pending = 0;
 				}
-				ps.executeUpdate();
 			}
-		} catch (Exception ee) {
-            throw new RuntimeException(ee);
+			if (pending > 0) {
+				ps.executeBatch();
+				progress.accept(pending);
+			}
 		}
+		reportRate(schema.table, "exported", eventy.size(), startTime);
 	}
 
 	/**
-	 * exports list of events to XML file
+	 * writes changes of events to database without committing, so that caller decides about the transaction
+	 * @param conn connection to database, with auto-commit turned off
+	 * @param inserted events added since last synchronization
+	 * @param updated events changed since last synchronization, content in the database mapped on current content
+	 * @param deleted content in the database of events deleted since last synchronization
+	 * @param schema version of events table
+	 * @return true if changes were written, false if any changed or deleted row was not found exactly once, then caller has to roll back
+	 * @throws SQLException if events cannot be written
+	 */
+	private boolean writeEventyChanges(Connection conn, List<Event> inserted, Map<Event, Event> updated, Collection<Event> deleted, EventSchema schema)
+			throws SQLException {
+		long startTime = System.nanoTime();
+		try (PreparedStatement delete = conn.prepareStatement("DELETE FROM " + schema.table + schema.rowCondition);
+				PreparedStatement update = conn.prepareStatement("UPDATE " + schema.table + " SET " +
+						"tittle = ?, start = ?, end = ?, note = ?, place = ?, sound = ?, before = ?" + schema.rowCondition);
+				PreparedStatement insert = conn.prepareStatement("INSERT INTO " + schema.table + " " + EVENT_COLUMNS +
+						" VALUES (?, ?, ?, ?, ?, ?, ?);")) {
+			for (Event event : deleted) {
+				setEventKey(delete, event, 1, schema);
+				delete.addBatch();
+			}
+			for (Map.Entry<Event, Event> change : updated.entrySet()) {
+				setEventColumns(update, change.getValue(), schema);
+				setEventKey(update, change.getKey(), 8, schema);
+				update.addBatch();
+			}
+			if (!deleted.isEmpty() && !eachRowOnce(delete.executeBatch()) || !updated.isEmpty() && !eachRowOnce(update.executeBatch())) {
+				return false;
+			}
+			progress.accept(deleted.size() + updated.size());
+			int pending = 0;
+			for (Event event : inserted) {
+				setEventColumns(insert, event, schema);
+				insert.addBatch();
+				if (++pending == batchSize) {
+					insert.executeBatch();
+					progress.accept(pending);
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				insert.executeBatch();
+				progress.accept(pending);
+			}
+		}
+		reportRate(schema.table, "exported", inserted.size() + updated.size() + deleted.size(), startTime);
+		return true;
+	}
+
+	/**
+	 * creates event from current row of result set of query beginning with EVENT_SELECT
+	 * @param rs result set positioned on a row
+	 * @param schema version of events table
+	 * @return created event
+	 * @throws SQLException if row cannot be read
+	 */
+	static Event readEvent(ResultSet rs, EventSchema schema) throws SQLException {
+		Object[] row = new Object[6];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = rs.getObject(i + 1);
+		}
+		return toEvent(row, schema);
+	}
+
+	/**
+	 * creates event from values of columns of row returned by query beginning with EVENT_SELECT
+	 * @param row values of columns
+	 * @param schema version of events table
+	 * @return created event
+	 */
+	static Event toEvent(Object[] row, EventSchema schema) {
+		Event temp = new Event((String) row[0], schema.toTime(row[1]), schema.toTime(row[2]));
+		String note = (String) row[3];
+		if (note != null && !note.isEmpty()) {
+			temp.setNote(note);
+		}
+		String place = (String) row[4];
+		if (place != null && !place.isEmpty()) {
+			temp.setPlace(place);
+		}
+		temp.setNotification(schema.toTime(row[5]));
+		if (log.isLoggable(Level.FINEST)) {
+			log.finest(temp.getTittle() + " S-" + temp.getStart() + " E-" + temp.getEnd() + " " + note + " " + place);
+		}
+		return temp;
+	}
+
+	/**
+	 * creates contact from values of columns of row returned by query beginning with CONTACT_SELECT
+	 * @param row values of columns
+	 * @return created contact
+	 */
+	static Contact toContact(Object[] row) {
+		Contact temp = new Contact((String) row[0]);
+		if (row[1] != null) {
+			temp.setCompany((String) row[1]);
+		}
+		if (row[2] != null) {
+			temp.setEmail((String) row[2]);
+		}
+		if (row[3] != null) {
+			temp.setPhone((String) row[3]);
+		}
+		if (log.isLoggable(Level.FINEST)) {
+			log.finest(temp.getName() + " " + row[1] + " " + row[2] + " " + row[3]);
+		}
+		return temp;
+	}
+
+	/**
+	 * sets parameters 1-7 of statement to values of columns of events table taken from given event
+	 * @param ps statement to set parameters of
+	 * @param event event to take values from
+	 * @param schema version of events table
+	 * @throws SQLException if parameter cannot be set
+	 */
+	static void setEventColumns(PreparedStatement ps, Event event, EventSchema schema) throws SQLException {
+		ps.setString(1, event.getTittle());
+		schema.setTime(ps, 2, event.getStart());
+		schema.setTime(ps, 3, event.getEnd());
+		ps.setString(4, event.getNote());
+		ps.setString(5, event.getPlace());
+
+		if (event.hasNotification()) {
+			ps.setString(6, event.getNotification().getSound());
+			schema.setTime(ps, 7, event.getNotification().getBefore());
+		} else {
+			ps.setString(6, "");
+			schema.setTime(ps, 7, null);
+		}
+	}
+
+	/**
+	 * sets six parameters of row condition of events table to content of given event, as it was written to database
+	 * @param ps statement to set parameters of
+	 * @param event event to take values from
+	 * @param first index of the first parameter of the condition
+	 * @param schema version of events table
+	 * @throws SQLException if parameter cannot be set
+	 */
+	static void setEventKey(PreparedStatement ps, Event event, int first, EventSchema schema) throws SQLException {
+		ps.setString(first, event.getTittle() == null ? "" : event.getTittle());
+		schema.setTimeKey(ps, first + 1, event.getStart());
+		schema.setTimeKey(ps, first + 2, event.getEnd());
+		ps.setString(first + 3, event.getNote() == null ? "" : event.getNote());
+		ps.setString(first + 4, event.getPlace() == null ? "" : event.getPlace());
+		schema.setTimeKey(ps, first + 5, event.hasNotification() ? event.getNotification().getBefore() : null);
+	}
+
+	/**
+	 * returns version of events table of given database file, found when the file is used for the first time. File is never changed by this method,
+	 * files of the first version are migrated only when user asks for it, by migrate method
+	 * @param baza name of a file with database
+	 * @return version of events table
+	 */
+	synchronized EventSchema schema(String baza) {
+		String key = new File(baza).getAbsolutePath();
+		EventSchema schema = schemas.get(key);
+		if (schema == null) {
+			schema = checkSchema(new File(key));
+			schemas.put(key, schema);
+		}
+		return schema;
+	}
+
+	/**
+	 * finds version of events table of given database file, opening it read only
+	 * @param file database file
+	 * @return version of events table, the first one if the file cannot be read by Jackcess
+	 */
+	private EventSchema checkSchema(File file) {
+		try (Database db = new DatabaseBuilder(file).setReadOnly(true).open()) {
+			return db.getTableNames().contains(EventSchema.KEYED.table) ? EventSchema.KEYED : EventSchema.STRINGS;
+		} catch (IOException | RuntimeException e) {
+			log.log(Level.WARNING, file + ": version of events table cannot be read", e);
+			return EventSchema.STRINGS;
+		}
+	}
+
+	/**
+	 * migrates given database file to the second version of events table, with date and time columns, indexes on start and end and autonumber
+	 * id column. Rows of the first version are copied into the new table and left in place, so that earlier versions of the program can still
+	 * read the file, changes made afterwards are written only to the new table. Migration is performed on a copy of the file, which replaces
+	 * the file only when migration succeeds. Jackcess creates tables only in files with general sort order, migration of other files fails
+	 * and leaves them unchanged. Lock of the file is held meanwhile, so events kept in it wait for the migration
+	 * @param baza name of a file with database
+	 * @return true if file was migrated, false if it already had the second version
+	 * @throws RuntimeException if file cannot be migrated
+	 */
+	public synchronized boolean migrate(String baza) {
+		File file = new File(baza).getAbsoluteFile();
+		if (schema(file.getPath()) == EventSchema.KEYED) {
+			return false;
+		}
+		long startTime = System.nanoTime();
+		File copy = new File(file.getPath() + ".migrating");
+		int rows = 0;
+		synchronized (DatabaseSession.getInstance().lock(baza)) {
+			try {
+				DatabaseSession.getInstance().close(baza);
+				Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				try (Database db = DatabaseBuilder.open(copy)) {
+					Table keyed = new TableBuilder(EventSchema.KEYED.table)
+							.addColumn(new ColumnBuilder("tittle", DataType.TEXT).setMaxLength())
+							.addColumn(new ColumnBuilder("start", DataType.SHORT_DATE_TIME))
+							.addColumn(new ColumnBuilder("end", DataType.SHORT_DATE_TIME))
+							.addColumn(new ColumnBuilder("note", DataType.TEXT).setMaxLength())
+							.addColumn(new ColumnBuilder("place", DataType.TEXT).setMaxLength())
+							.addColumn(new ColumnBuilder("sound", DataType.TEXT).setMaxLength())
+							.addColumn(new ColumnBuilder("before", DataType.SHORT_DATE_TIME))
+							.addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true))
+							.addIndex(new IndexBuilder("startIndex").addColumns("start"))
+							.addIndex(new IndexBuilder("endIndex").addColumns("end"))
+							.toTable(db);
+					Table legacy = db.getTable(EventSchema.STRINGS.table);
+					if (legacy != null) {
+						List<Object[]> chunk = new ArrayList<>(batchSize);
+						for (Row row : legacy) {
+							chunk.add(new Object[] { row.getString("tittle"), toDate(row.get("start")), toDate(row.get("end")),
+									row.getString("note"), row.getString("place"), row.getString("sound"), toDate(row.get("before")), null });
+							if (chunk.size() == batchSize) {
+								keyed.addRows(chunk);
+								progress.accept(chunk.size());
+								rows += chunk.size();
+								chunk.clear();
+							}
+						}
+						keyed.addRows(chunk);
+						progress.accept(chunk.size());
+						rows += chunk.size();
+					}
+				}
+				Files.move(copy.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException | UnsupportedOperationException e) {
+				throw new RuntimeException(file + ": events table cannot be migrated: " + e.getMessage(), e);
+			} finally {
+				try {
+					Files.deleteIfExists(copy.toPath());
+				} catch (IOException e) {
+					log.log(Level.WARNING, copy + ": copy of database cannot be deleted", e);
+				}
+			}
+		}
+		schemas.put(file.getPath(), EventSchema.KEYED);
+		reportRate(EventSchema.KEYED.table, "migrated", rows, startTime);
+		return true;
+	}
+
+	/**
+	 * converts time stored as string in the first version of events table to value of date and time column
+	 * @param value stored string
+	 * @return date, null if value is empty
+	 */
+	private static Date toDate(Object value) {
+		LocalDateTime time = EventSchema.parse((String) value);
+		return time == null ? null : Timestamp.valueOf(time);
+	}
+
+	/**
+	 * tells if every statement of a batch changed exactly one row
+	 * @param counts numbers of changed rows returned by executeBatch
+	 * @return true if every statement changed one row
+	 */
+	private static boolean eachRowOnce(int[] counts) {
+		for (int count : counts) {
+			if (count != 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * logs number of transferred rows and transfer speed, allowing to tune batch size
+	 * @param table name of table rows were transferred from or to
+	 * @param operation name of operation, imported, exported or migrated
+	 * @param rows number of transferred rows
+	 * @param startTime value of System.nanoTime() taken when transfer started
+	 */
+	private void reportRate(String table, String operation, int rows, long startTime) {
+		if (log.isLoggable(Level.INFO)) {
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			log.info(String.format("%s: %s %d rows in %.2f s (%.0f rows/s, batch size %d)",
+					table, operation, rows, seconds, seconds > 0 ? rows / seconds : 0.0, batchSize));
+		}
+	}
+
+	/**
+	 * exports list of events to XML file in compact format, writing events one by one
 	 * @param file file to export events to
 	 * @param eventsToExport list of events to export
 	 */
 	public void xmlExport(File file, List<Event> eventsToExport) {
+		log.fine("xmlExport: " + file);
 		try {
-			XMLEncoder e = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(file)));
-
-			e.setPersistenceDelegate(LocalDateTime.class, // Event -- start, end
-					new PersistenceDelegate() {
-						@Override
-						protected Expression instantiate(Object localDateTime, Encoder encdr) {
-							return new Expression(localDateTime, LocalDateTime.class, "parse",
-									new Object[] { localDateTime.toString() });
-						}
-					});
-
-//			e.setPersistenceDelegate(LocalDateTime.class, // Alarm -- before
-//					new PersistenceDelegate() {
-//						@Override
-//						protected Expression instantiate(Object localDateTime, Encoder encdr) {
-//							return new Expression(localDateTime, LocalTime.class, "parse",
-//									new Object[] { localDateTime.toString() });
-//						}
-//					});
-
-			e.writeObject(eventsToExport);
-			e.close();
+			long startTime = System.nanoTime();
+			EventXml.write(file, eventsToExport, batchSize, progress);
+			reportRate(file.getName(), "exported", eventsToExport.size(), startTime);
 		} catch (Exception e) {
             throw new RuntimeException(e);
 		}
@@ -215,11 +710,29 @@ public class Transmiter {
 	 * @param file file to import events from
 	 * @return list imported of events 
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Event> xmlImport(File file) {
-		System.out.println("----------------------xmlImport:");
-		try(XMLDecoder d = new XMLDecoder(new BufferedInputStream(new FileInputStream(file)))) {
-			return (ArrayList<Event>) d.readObject();
+		List<Event> events = new ArrayList<>();
+		xmlImport(file, events::addAll);
+		return events;
+	}
+
+	/**
+	 * reads events from XML file in compact format or in format of XMLEncoder and passes them to consumer in chunks of batch size,
+	 * without holding all of them at once
+	 * @param file file to import events from
+	 * @param chunks consumer receiving consecutive chunks of events
+	 */
+	public void xmlImport(File file, Consumer<List<Event>> chunks) {
+		log.fine("xmlImport: " + file);
+		try {
+			long startTime = System.nanoTime();
+			int[] rows = new int[1];
+			EventXml.read(file, batchSize, chunk -> {
+				chunks.accept(chunk);
+				rows[0] += chunk.size();
+				progress.accept(chunk.size());
+			});
+			reportRate(file.getName(), "imported", rows[0], startTime);
 		} catch (Exception e) {
             throw new RuntimeException(e);
 		}
@@ -0,0 +1,514 @@
+package system;
+
+import java.util.Arrays;
+
+/**
+ * scheduler keeping alarms in hierarchical timing wheels - second wheel covering current minute, minute wheel covering current hour, hour wheel covering
+ * current day and day wheel covering current period of 366 days. Alarms further in the future wait in overflow list. Every alarm is kept in a doubly linked
+ * list of one slot, so adding and cancelling alarm take constant time regardless of number of scheduled alarms. When clock reaches beginning of a minute,
+ * hour or day, alarms of the matching slot of higher wheel are moved down to lower wheels.
+ * Alarms are kept in parallel arrays instead of objects and found by identifier of event through open addressing index of primitive ints, so scheduling
+ * allocates nothing while the arrays are large enough. Every slot keeps the earliest time of its alarms and a bitmap marks slots holding alarms,
+ * so the earliest alarm is found without walking lists of slots.
+ * @author Mateusz Keller
+ *
+ */
+class WheelAlarmScheduler extends AlarmScheduler {
+
+	/**
+	 * number of wheels
+	 */
+	private static final int WHEELS = 4;
+	/**
+	 * index of overflow list among lists of alarms
+	 */
+	private static final int OVERFLOW = WHEELS;
+	/**
+	 * index of list of due alarms among lists of alarms
+	 */
+	private static final int DUE = WHEELS + 1;
+	/**
+	 * time covered by one slot of every wheel, in seconds
+	 */
+	private static final long[] TICK = { 1, 60, 60 * 60, 24 * 60 * 60 };
+	/**
+	 * number of slots of every wheel
+	 */
+	private static final int[] SLOTS = { 60, 60, 24, 366 };
+	/**
+	 * time covered by whole wheel, in seconds
+	 */
+	private static final long[] PERIOD = { 60, 60 * 60, 24 * 60 * 60, 366L * 24 * 60 * 60 };
+	/**
+	 * index of the first slot of every wheel and list among slots of all of them, overflow list and list of due alarms have one slot each
+	 */
+	private static final int[] FIRST_SLOT = { 0, 60, 120, 144, 510, 511 };
+	/**
+	 * number of slots of all wheels and lists
+	 */
+	private static final int ALL_SLOTS = 512;
+	/**
+	 * index of wheel or list every slot belongs to
+	 */
+	private static final int[] LIST_OF_SLOT = new int[ALL_SLOTS];
+	/**
+	 * value of link standing for no alarm
+	 */
+	private static final int NIL = -1;
+	/**
+	 * initial number of alarms the arrays can hold
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	static {
+		for (int list = 0; list < FIRST_SLOT.length; list++) {
+			int end = list + 1 < FIRST_SLOT.length ? FIRST_SLOT[list + 1] : ALL_SLOTS;
+			Arrays.fill(LIST_OF_SLOT, FIRST_SLOT[list], end, list);
+		}
+	}
+
+	/**
+	 * first alarm of every slot, NIL for empty slot
+	 */
+	private final int[] heads = new int[ALL_SLOTS];
+	/**
+	 * the earliest time of alarms of every slot, valid for slots holding alarms
+	 */
+	private final long[] earliest = new long[ALL_SLOTS];
+	/**
+	 * bitmap of slots holding alarms
+	 */
+	private final long[] occupied = new long[ALL_SLOTS / 64];
+	/**
+	 * number of alarms held in every wheel and list
+	 */
+	private final int[] counts = new int[WHEELS + 2];
+	/**
+	 * identifier of event of every alarm
+	 */
+	private int[] ids = new int[INITIAL_CAPACITY];
+	/**
+	 * time of every alarm in seconds, as kept in EventStore
+	 */
+	private long[] times = new long[INITIAL_CAPACITY];
+	/**
+	 * slot holding every alarm
+	 */
+	private int[] slots = new int[INITIAL_CAPACITY];
+	/**
+	 * previous alarm in the slot of every alarm
+	 */
+	private int[] prev = new int[INITIAL_CAPACITY];
+	/**
+	 * next alarm in the slot of every alarm, for released alarms next released one
+	 */
+	private int[] next = new int[INITIAL_CAPACITY];
+	/**
+	 * number of alarms ever used in the arrays, alarms from this index on were never used
+	 */
+	private int used;
+	/**
+	 * first released alarm, reused before unused ones, NIL if none
+	 */
+	private int released = NIL;
+	/**
+	 * alarm of every scheduled event
+	 */
+	private final IdIndex index = new IdIndex();
+	/**
+	 * time in seconds wheels have been advanced to
+	 */
+	private long current;
+
+	/**
+	 * open addressing hash map from identifier of event to its alarm, with linear probing and no boxing of keys or values
+	 */
+	private static class IdIndex {
+		/**
+		 * identifiers of events
+		 */
+		private int[] keys = new int[INITIAL_CAPACITY];
+		/**
+		 * alarms of events, NIL for empty place
+		 */
+		private int[] values = filled(INITIAL_CAPACITY);
+		/**
+		 * number of events in the map
+		 */
+		private int size;
+
+		/**
+		 * returns alarm of given event
+		 * @param id identifier of event
+		 * @return alarm, NIL if event has no alarm
+		 */
+		int get(int id) {
+			int mask = keys.length - 1;
+			for (int i = hash(id) & mask; values[i] != NIL; i = (i + 1) & mask) {
+				if (keys[i] == id) {
+					return values[i];
+				}
+			}
+			return NIL;
+		}
+
+		/**
+		 * puts alarm of event, which has no alarm yet
+		 * @param id identifier of event
+		 * @param alarm alarm of event
+		 */
+		void put(int id, int alarm) {
+			if (2 * (size + 1) > keys.length) {
+				rehash(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = hash(id) & mask;
+			while (values[i] != NIL) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = id;
+			values[i] = alarm;
+			size++;
+		}
+
+		/**
+		 * removes alarm of event, moving back following entries of the probe sequence so that no place is left marked as removed
+		 * @param id identifier of event
+		 * @return removed alarm, NIL if event had no alarm
+		 */
+		int remove(int id) {
+			int mask = keys.length - 1;
+			int i = hash(id) & mask;
+			while (values[i] != NIL && keys[i] != id) {
+				i = (i + 1) & mask;
+			}
+			int alarm = values[i];
+			if (alarm == NIL) {
+				return NIL;
+			}
+			int hole = i;
+			for (int j = (i + 1) & mask; values[j] != NIL; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					keys[hole] = keys[j];
+					values[hole] = values[j];
+					hole = j;
+				}
+			}
+			values[hole] = NIL;
+			size--;
+			return alarm;
+		}
+
+		/**
+		 * removes all entries
+		 */
+		void clear() {
+			Arrays.fill(values, NIL);
+			size = 0;
+		}
+
+		/**
+		 * returns number of events in the map
+		 * @return number of events
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * moves entries to arrays of given capacity
+		 * @param capacity new capacity, power of two
+		 */
+		private void rehash(int capacity) {
+			int[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new int[capacity];
+			values = filled(capacity);
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldValues[i] != NIL) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		/**
+		 * spreads identifier over the table by Fibonacci hashing. Consecutive identifiers, which stores give to events, would otherwise form one long
+		 * run of places which linear probing and removal have to walk through
+		 * @param id identifier of event
+		 * @return hash of identifier
+		 */
+		private static int hash(int id) {
+			int h = id * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+		/**
+		 * creates array filled with NIL
+		 * @param length length of array
+		 * @return new array
+		 */
+		private static int[] filled(int length) {
+			int[] array = new int[length];
+			Arrays.fill(array, NIL);
+			return array;
+		}
+	}
+
+	/**
+	 * constructs scheduler informing given listener about due alarms
+	 * @param listener object informed about due alarms
+	 * @param now current time in seconds
+	 */
+	WheelAlarmScheduler(AlarmListener listener, long now) {
+		super(listener);
+		Arrays.fill(heads, NIL);
+		current = now;
+	}
+
+	@Override
+	void add(int id, long time) {
+		remove(id);
+		int alarm = allocate();
+		ids[alarm] = id;
+		times[alarm] = time;
+		index.put(id, alarm);
+		place(alarm);
+	}
+
+	@Override
+	void remove(int id) {
+		int alarm = index.remove(id);
+		if (alarm != NIL) {
+			unlink(alarm);
+			release(alarm);
+		}
+	}
+
+	@Override
+	void removeAll() {
+		Arrays.fill(heads, NIL);
+		Arrays.fill(occupied, 0);
+		Arrays.fill(counts, 0);
+		index.clear();
+		used = 0;
+		released = NIL;
+	}
+
+	@Override
+	int count() {
+		return index.size();
+	}
+
+	@Override
+	int pollDue(long now) {
+		advance(now);
+		int alarm = heads[FIRST_SLOT[DUE]];
+		if (alarm == NIL) {
+			return NONE;
+		}
+		int id = ids[alarm];
+		unlink(alarm);
+		index.remove(id);
+		release(alarm);
+		return id;
+	}
+
+	@Override
+	long nextTime() {
+		if (counts[DUE] > 0) {
+			return current;
+		}
+		for (int wheel = 0; wheel < WHEELS; wheel++) {
+			if (counts[wheel] == 0) {
+				continue;
+			}
+			int from = FIRST_SLOT[wheel] + (int) Math.floorMod(Math.floorDiv(current, TICK[wheel]), (long) SLOTS[wheel]) + 1;
+			int slot = nextOccupied(from, FIRST_SLOT[wheel] + SLOTS[wheel]);
+			if (slot != NIL) {
+				return earliest[slot];
+			}
+		}
+		return counts[OVERFLOW] > 0 ? earliest[FIRST_SLOT[OVERFLOW]] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * moves wheels forward to given time, moving alarms of passed seconds to list of due alarms. Seconds in which no alarm can become due are skipped
+	 * @param now current time in seconds
+	 */
+	private void advance(long now) {
+		while (current < now) {
+			int empty = 0;
+			while (empty < WHEELS && counts[empty] == 0) {
+				empty++;
+			}
+			if (empty == WHEELS && counts[OVERFLOW] == 0) {
+				current = now;
+				return;
+			}
+			long step = empty == 0 ? 1 : PERIOD[empty - 1];
+			current = Math.min(now, (Math.floorDiv(current, step) + 1) * step);
+			if (Math.floorMod(current, PERIOD[WHEELS - 1]) == 0) {
+				cascade(FIRST_SLOT[OVERFLOW]);
+			}
+			for (int wheel = WHEELS - 1; wheel > 0; wheel--) {
+				if (Math.floorMod(current, TICK[wheel]) == 0) {
+					cascade(FIRST_SLOT[wheel] + (int) Math.floorMod(Math.floorDiv(current, TICK[wheel]), (long) SLOTS[wheel]));
+				}
+			}
+			cascade(FIRST_SLOT[0] + (int) Math.floorMod(current, (long) SLOTS[0]));
+		}
+	}
+
+	/**
+	 * places again all alarms of given slot, moving them to lower wheels or to list of due alarms. The slot is emptied at once,
+	 * so that its earliest time is not searched again after every moved alarm
+	 * @param slot slot to empty
+	 */
+	private void cascade(int slot) {
+		int alarm = heads[slot];
+		if (alarm == NIL) {
+			return;
+		}
+		int moved = 0;
+		for (int a = alarm; a != NIL; a = next[a]) {
+			moved++;
+		}
+		heads[slot] = NIL;
+		occupied[slot >>> 6] &= ~(1L << slot);
+		counts[LIST_OF_SLOT[slot]] -= moved;
+		while (alarm != NIL) {
+			int following = next[alarm];
+			place(alarm);
+			alarm = following;
+		}
+	}
+
+	/**
+	 * puts alarm to the lowest wheel whose whole period contains both current time and time of alarm
+	 * @param alarm alarm to place
+	 */
+	private void place(int alarm) {
+		long time = times[alarm];
+		if (time <= current) {
+			link(alarm, FIRST_SLOT[DUE]);
+			return;
+		}
+		for (int wheel = 0; wheel < WHEELS; wheel++) {
+			if (Math.floorDiv(time, PERIOD[wheel]) == Math.floorDiv(current, PERIOD[wheel])) {
+				link(alarm, FIRST_SLOT[wheel] + (int) Math.floorMod(Math.floorDiv(time, TICK[wheel]), (long) SLOTS[wheel]));
+				return;
+			}
+		}
+		link(alarm, FIRST_SLOT[OVERFLOW]);
+	}
+
+	/**
+	 * adds alarm at the beginning of given slot
+	 * @param alarm alarm to add
+	 * @param slot slot to add alarm to
+	 */
+	private void link(int alarm, int slot) {
+		int first = heads[slot];
+		slots[alarm] = slot;
+		prev[alarm] = NIL;
+		next[alarm] = first;
+		if (first == NIL) {
+			earliest[slot] = times[alarm];
+			occupied[slot >>> 6] |= 1L << slot;
+		} else {
+			prev[first] = alarm;
+			earliest[slot] = Math.min(earliest[slot], times[alarm]);
+		}
+		heads[slot] = alarm;
+		counts[LIST_OF_SLOT[slot]]++;
+	}
+
+	/**
+	 * removes alarm from its slot. If it was the earliest alarm of the slot, the earliest time is searched again, which happens for one alarm
+	 * of the slot on average. Earliest time of due alarms is not kept, as they are all due
+	 * @param alarm alarm to remove
+	 */
+	private void unlink(int alarm) {
+		int slot = slots[alarm];
+		if (prev[alarm] != NIL) {
+			next[prev[alarm]] = next[alarm];
+		} else {
+			heads[slot] = next[alarm];
+		}
+		if (next[alarm] != NIL) {
+			prev[next[alarm]] = prev[alarm];
+		}
+		counts[LIST_OF_SLOT[slot]]--;
+		if (heads[slot] == NIL) {
+			occupied[slot >>> 6] &= ~(1L << slot);
+		} else if (slot != FIRST_SLOT[DUE] && times[alarm] == earliest[slot]) {
+			earliest[slot] = searchEarliest(slot, times[alarm]);
+		}
+	}
+
+	/**
+	 * returns the earliest time of alarms of a slot, stopping as soon as an alarm at given time is found
+	 * @param slot slot holding alarms
+	 * @param lowest time no alarm of the slot can be earlier than
+	 * @return time in seconds
+	 */
+	private long searchEarliest(int slot, long lowest) {
+		long time = Long.MAX_VALUE;
+		for (int alarm = heads[slot]; alarm != NIL; alarm = next[alarm]) {
+			if (times[alarm] == lowest) {
+				return lowest;
+			}
+			time = Math.min(time, times[alarm]);
+		}
+		return time;
+	}
+
+	/**
+	 * returns the first slot holding alarms within given range
+	 * @param from the first slot of the range
+	 * @param to slot after the range
+	 * @return slot, NIL if all slots of the range are empty
+	 */
+	private int nextOccupied(int from, int to) {
+		for (int i = from; i < to; i = (i & ~63) + 64) {
+			long bits = occupied[i >>> 6] & (-1L << i);
+			if (bits != 0) {
+				int slot = (i & ~63) + Long.numberOfTrailingZeros(bits);
+				return slot < to ? slot : NIL;
+			}
+		}
+		return NIL;
+	}
+
+	/**
+	 * takes released alarm or the first unused one, growing the arrays if all are used
+	 * @return alarm not linked to any slot
+	 */
+	private int allocate() {
+		if (released != NIL) {
+			int alarm = released;
+			released = next[alarm];
+			return alarm;
+		}
+		if (used == ids.length) {
+			int capacity = used * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			times = Arrays.copyOf(times, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+			prev = Arrays.copyOf(prev, capacity);
+			next = Arrays.copyOf(next, capacity);
+		}
+		return used++;
+	}
+
+	/**
+	 * returns alarm to be reused by the next scheduled one
+	 * @param alarm alarm removed from its slot
+	 */
+	private void release(int alarm) {
+		next[alarm] = released;
+		released = alarm;
+	}
+}
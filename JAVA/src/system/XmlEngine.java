@@ -0,0 +1,75 @@
+package system;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+import dane.Contact;
+import dane.Event;
+
+/**
+ * engine keeping events in XML file, read and written by Transmiter through EventXml. XML file holds no contacts, and is always written whole.
+ * @author Marta Bielecka
+ *
+ */
+class XmlEngine implements StorageEngine {
+
+	/**
+	 * Transmiter reading and writing XML file
+	 */
+	private final Transmiter xPort;
+	/**
+	 * XML file, null until opened
+	 */
+	private File file;
+
+	/**
+	 * constructs engine using given Transmiter
+	 * @param xPort Transmiter reading and writing XML file
+	 */
+	XmlEngine(Transmiter xPort) {
+		this.xPort = xPort;
+	}
+
+	/**
+	 * remembers the file, which is opened by every read and write
+	 * @param file XML file
+	 */
+	@Override
+	public void open(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public void streamEvents(Consumer<List<Event>> chunks) {
+		xPort.xmlImport(file, chunks);
+	}
+
+	/**
+	 * passes nothing, XML file holds no contacts
+	 * @param chunks consumer of contacts
+	 */
+	@Override
+	public void streamContacts(Consumer<List<Contact>> chunks) {
+	}
+
+	/**
+	 * writes all events to the file, contacts are skipped
+	 * @param changes changes to write
+	 * @return false if only changes of events are given
+	 */
+	@Override
+	public boolean applyChanges(StorageChanges changes) {
+		if (changes.isIncremental()) {
+			return false;
+		}
+		if (changes.getEvents() != null) {
+			xPort.xmlExport(file, changes.getEvents());
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+}
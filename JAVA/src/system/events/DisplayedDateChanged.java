@@ -2,8 +2,8 @@ package system.events;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
-import dane.Contact;
 import dane.Event;
 
 /**
@@ -17,19 +17,19 @@ public class DisplayedDateChanged implements InternalEvent {
 	 */
 	private LocalDate newDate;
 	/**
-	 * list of events corresponding with displayed date
+	 * events in displayed month mapped on days of month they take place in
 	 */
-	private List<Event> events; 
+	private Map<Integer, List<Event>> eventsAcrossDays; 
 	
 	/**
-	 * constructs DisplayedDateChanged object with given date and list of events
+	 * constructs DisplayedDateChanged object with given date and events mapped on days of month
 	 * @param newDate
-	 * @param events
+	 * @param eventsAcrossDays
 	 */
-	public DisplayedDateChanged(LocalDate newDate, List<Event> events) {
+	public DisplayedDateChanged(LocalDate newDate, Map<Integer, List<Event>> eventsAcrossDays) {
 		super();
 		this.newDate = newDate;
-		this.events = events;
+		this.eventsAcrossDays = eventsAcrossDays;
 	}
 	
 	/**
@@ -48,19 +48,19 @@ public class DisplayedDateChanged implements InternalEvent {
 		this.newDate = newDate;
 	}
 	/**
-	 * returns list of events corresponding with actually displayed date
-	 * @return list of event for a date
+	 * returns events in displayed month mapped on days of month
+	 * @return map of day of month to list of events in that day
 	 */
-	public List<Event> getEvents() {
-		return events;
+	public Map<Integer, List<Event>> getEventsAcrossDays() {
+		return eventsAcrossDays;
 	}
 	
 	/**
-	 * changes list of events in events field
-	 * @param events
+	 * changes events mapped on days of month in eventsAcrossDays field
+	 * @param eventsAcrossDays
 	 */
-	public void setEvents(List<Event> events) {
-		this.events = events;
+	public void setEventsAcrossDays(Map<Integer, List<Event>> eventsAcrossDays) {
+		this.eventsAcrossDays = eventsAcrossDays;
 	}
 	
 	